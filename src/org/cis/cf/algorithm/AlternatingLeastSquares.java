@@ -3,18 +3,14 @@ package org.cis.cf.algorithm;
 import java.util.Random;
 
 import org.cis.data.Ratings;
+import org.cis.matrix.ImmutableSparseDoubleMatrix;
 
 
-import cern.colt.function.DoubleProcedure;
-import cern.colt.list.DoubleArrayList;
-import cern.colt.list.IntArrayList;
 import cern.colt.matrix.DoubleFactory1D;
-import cern.colt.matrix.DoubleFactory2D;
 import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix1D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
-import cern.colt.matrix.impl.SparseDoubleMatrix2D;
 import cern.colt.matrix.linalg.Algebra;
 
 /**
@@ -37,32 +33,19 @@ public class AlternatingLeastSquares implements RatingPredictor{
 	/** training data set of ratings */
 	Ratings ratings;
 
-	/** training data set represented by sparse matrix */
-	SparseDoubleMatrix2D trainMatrix;
-	/** indicator of training sparse matrix */
-	SparseDoubleMatrix2D logitMatrix;
+	/** training data set represented by sparse matrix, users by items */
+	ImmutableSparseDoubleMatrix trainMatrix;
+	/** training data set represented by sparse matrix, items by users */
+	ImmutableSparseDoubleMatrix itemMatrix;
 	
 	/** user factors */
 	DenseDoubleMatrix2D userFeatures;
 	/** item factors */
 	DenseDoubleMatrix2D itemFeatures;
 	
-	/** sub user factor */
-	DoubleMatrix2D subUserFeatures;
-	/** sub item factor */
-	DoubleMatrix2D subItemFeatures;
-	
-	/** vector of a user */
-	DoubleMatrix1D Ri;
-	/** vector of an item */
-	DoubleMatrix1D Rj;
-	
-	/** eye matrix */
-	DoubleMatrix2D E;
-	
-	/** the ratings number involved with the user */
+	/** the number of distinct items rated by the user, the cells of its row */
 	DenseDoubleMatrix1D userRateNumber;
-	/** the ratings number involved with the item */
+	/** the number of distinct users who rated the item, the cells of its row */
 	DenseDoubleMatrix1D itemRatedNumber;
 	
 	/** number of users */
@@ -114,29 +97,30 @@ public class AlternatingLeastSquares implements RatingPredictor{
 		
 		this.userFeatures = new DenseDoubleMatrix2D(featureNumber, userNumber + 1);
 		this.itemFeatures = new DenseDoubleMatrix2D(featureNumber, itemNumber + 1);
-		this.trainMatrix = new SparseDoubleMatrix2D(userNumber + 1, itemNumber + 1);
-		this.logitMatrix = new SparseDoubleMatrix2D(userNumber + 1, itemNumber + 1);
 		
 		this.userRateNumber  = new DenseDoubleMatrix1D( userNumber + 1);
 		this.itemRatedNumber = new DenseDoubleMatrix1D( itemNumber + 1);
 		
-		E = DoubleFactory2D.sparse.identity(featureNumber);
-		
 		this.maxIterNumber = maxIterNumber;
 		
 		convertData();
 	}
 	
 	/**
-	 * Convert training data from Ratings to sparse matrix
+	 * Convert training data from Ratings to sparse matrix, a rated pair keeps its last rating
 	 */
 	private void convertData(){
 		int count = ratings.getCount();
+		int[] users = new int[count];
+		int[] items = new int[count];
+		double[] values = new double[count];
 		for( int index = 0; index != count; ++index){
-			trainMatrix.setQuick(ratings.getUser(index), ratings.getItem(index), ratings.getRating(index));
-			logitMatrix.setQuick(ratings.getUser(index), ratings.getItem(index), 1);
+			users[index]  = ratings.getUser(index);
+			items[index]  = ratings.getItem(index);
+			values[index] = ratings.getRating(index);
 		}
-		ratings.clear();
+		trainMatrix = ImmutableSparseDoubleMatrix.build(userNumber + 1, itemNumber + 1, users, items, values, count);
+		itemMatrix  = trainMatrix.transpose();
 	}
 	
 	/**
@@ -149,13 +133,13 @@ public class AlternatingLeastSquares implements RatingPredictor{
 			for( int f = 0; f != featureNumber; ++f){
 				userFeatures.setQuick(f, u, rand.nextGaussian() * 0.01);
 			}
-			userRateNumber.setQuick(u, logitMatrix.viewRow(u).cardinality());
+			userRateNumber.setQuick(u, trainMatrix.getNumEntriesByRow(u));
 		}
 		for( int i = 1; i <= itemNumber; ++i){
 			for( int f = 0; f != featureNumber; ++f){
 				itemFeatures.setQuick(f, i, rand.nextGaussian() * 0.01);
 			}
-			itemRatedNumber.setQuick(i, logitMatrix.viewColumn(i).cardinality());
+			itemRatedNumber.setQuick(i, itemMatrix.getNumEntriesByRow(i));
 		}
 	}
 	
@@ -205,112 +189,49 @@ public class AlternatingLeastSquares implements RatingPredictor{
 	}
 	
 	/**
-	 * Generate the sub item factors involved with the given user
-	 * @param i the given user id
+	 * Get the products of the ratings of every row and the factors of its
+	 * columns, Vi of all the users or Vj of all the items, in one parallel
+	 * sparse by dense product
+	 * @param matrix the ratings, by user or by item
+	 * @param features the factors, one column per column of the matrix
+	 * @return the product of each row
 	 */
-	public void gensubItemFeatures(int i) {
-		IntArrayList indexList = new IntArrayList();
-		DoubleArrayList valueList = new DoubleArrayList();
-		logitMatrix.viewRow(i).getNonZeros(indexList, valueList);
-		int[] rowIndexes = new int[featureNumber];
-		int l = indexList.size();
-		int[] columnIndexes = new int[l];
-		int x;
-		for (x = 0; x != l; ++x) {
-			columnIndexes[x] = indexList.get(x);
-		}
-		for (x = 0; x != featureNumber; ++x) {
-			rowIndexes[x] = x;
-		}
-		subItemFeatures = itemFeatures.viewSelection(rowIndexes, columnIndexes);
+	private double[][] products(ImmutableSparseDoubleMatrix matrix, DoubleMatrix2D features) {
+		double[][] products = new double[matrix.getRowDimension()][featureNumber];
+		matrix.multiply(features.viewDice().toArray(), products);
+		return products;
 	}
 
 	/**
-	 * Generate the sub user factors involved with the given item
-	 * @param j the given item id
+	 * Solve the factor of a row: (Mi Mi' + reg E)^-1 Vi, Mi the factors of the
+	 * columns set in the row
+	 * @param matrix the ratings, by user or by item
+	 * @param row the row id
+	 * @param features the factors, one column per column of the matrix
+	 * @param reg the regularization of the row
+	 * @param product the product Vi of the row
+	 * @return the factor, 0 if the row is empty
 	 */
-	public void gensubUserFeatures(int j) {
-		IntArrayList indexList = new IntArrayList();
-		DoubleArrayList valueList = new DoubleArrayList();
-		logitMatrix.viewColumn(j).getNonZeros(indexList, valueList);
-		int[] rowIndexes = new int[featureNumber];
-		int x;
-		int l = indexList.size();
-		int[] columnIndexes = new int[l];
-		for (x = 0; x != l; ++x) {
-			columnIndexes[x] = indexList.get(x);
+	private DoubleMatrix1D solve(ImmutableSparseDoubleMatrix matrix, int row, DoubleMatrix2D features,
+			double reg, double[] product) {
+		if (matrix.getNumEntriesByRow(row) == 0)
+			return DoubleFactory1D.sparse.make(featureNumber, 0);
+		double[][] A = new double[featureNumber][featureNumber];
+		for (int pos = matrix.rowStart(row); pos != matrix.rowEnd(row); ++pos) {
+			int column = matrix.columnIndex(pos);
+			for (int f = 0; f != featureNumber; ++f) {
+				double x = features.getQuick(f, column);
+				for (int g = 0; g <= f; ++g)
+					A[f][g] += x * features.getQuick(g, column);
+			}
 		}
-		for (x = 0; x != featureNumber; ++x) {
-			rowIndexes[x] = x;
+		for (int f = 0; f != featureNumber; ++f) {
+			A[f][f] += reg;
+			for (int g = 0; g != f; ++g)
+				A[g][f] = A[f][g];
 		}
-		subUserFeatures = userFeatures.viewSelection(rowIndexes, columnIndexes);
-	}
-
-	/**
-	 * Generate the vector contains the items involved with the given user
-	 * @param i the user id
-	 */
-	public void genRi(int i) {
-		Ri = trainMatrix.viewRow(i).viewSelection(
-				new DoubleProcedure() {
-					public final boolean apply(double element) {
-						return element != 0;
-					}
-				});
-	}
-
-	/**
-	 * Generate the vector contains the users involved with the give item
-	 * @param j the item id
-	 */
-	public void genRj(int j) {
-		Rj = trainMatrix.viewColumn(j).viewSelection(
-				new DoubleProcedure() {
-					public final boolean apply(double element) {
-						return element != 0;
-					}
-				});
-	}
-
-	/**
-	 * Update the factor of given user
-	 * @param i the user id
-	 * @return the updated user factor
-	 */
-	public DoubleMatrix1D genUi(int i) {
-		Algebra algebra = new Algebra(0);
-		Algebra algebra2 = new Algebra(0);
-		gensubItemFeatures(i);
-		genRi(i);
-		E = DoubleFactory2D.sparse.identity(featureNumber);
-		return algebra
-				.mult(
-				// inverse of Ai
-						algebra2.inverse(subItemFeatures.zMult(subItemFeatures.viewDice(), E,
-								1, userReg * userRateNumber.getQuick(i), false,
-								false)),
-						// Vi
-						algebra.mult(subItemFeatures, Ri));
-	}
-
-	/**
-	 * Update the factor of given item
-	 * @param j the item id
-	 * @return the updated item factor
-	 */
-	public DoubleMatrix1D genMj(int j) {
-		if (logitMatrix.viewColumn(j).cardinality() == 0)
-			return DoubleFactory1D.sparse.make(featureNumber, 0);
 		Algebra algebra = new Algebra(0);
-		gensubUserFeatures(j);
-		genRj(j);
-		E = DoubleFactory2D.sparse.identity(featureNumber);
-		return algebra.mult(
-		// inverse of Aj
-				algebra.inverse(subUserFeatures.zMult(subUserFeatures.viewDice(), E, 1,
-						itemReg * itemRatedNumber.getQuick(j), false, false)),
-				// Vj
-				algebra.mult(subUserFeatures, Rj));
+		return algebra.mult(algebra.inverse(new DenseDoubleMatrix2D(A)), new DenseDoubleMatrix1D(product));
 	}
 
 	/**
@@ -319,9 +240,9 @@ public class AlternatingLeastSquares implements RatingPredictor{
 	public void genU() {
 		int i, j;
 		DoubleMatrix1D Ui;
+		double[][] products = products(trainMatrix, itemFeatures);
 		for (i = 1; i <= userNumber; ++i) {
-			// System.out.print("the " + i + "th user:");
-			Ui = genUi(i);
+			Ui = solve(trainMatrix, i, itemFeatures, userReg * userRateNumber.getQuick(i), products[i]);
 			for (j = 0; j != featureNumber; ++j) {
 				userFeatures.setQuick(j, i, Ui.getQuick(j));
 			}
@@ -334,8 +255,9 @@ public class AlternatingLeastSquares implements RatingPredictor{
 	public void genM() {
 		int i, j;
 		DoubleMatrix1D Mj;
+		double[][] products = products(itemMatrix, userFeatures);
 		for (j = 1; j <= itemNumber; ++j) {
-			Mj = genMj(j);
+			Mj = solve(itemMatrix, j, userFeatures, itemReg * itemRatedNumber.getQuick(j), products[j]);
 			for (i = 0; i != featureNumber; ++i) {
 				itemFeatures.setQuick(i, j, Mj.getQuick(i));
 			}
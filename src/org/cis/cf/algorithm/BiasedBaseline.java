@@ -1,8 +1,8 @@
 package org.cis.cf.algorithm;
 
-import java.util.ArrayList;
 import java.util.Random;
 
+import org.cis.data.EpochOrder;
 import org.cis.data.Ratings;
 
 /**
@@ -39,6 +39,8 @@ public class BiasedBaseline implements RatingPredictor {
 	double maxIterNumber;
 	/** the train ratings number */
 	int trainNumber;
+	/** the visiting order of the ratings in each epoch */
+	EpochOrder epochOrder;
 	
 	/** learing rate for updating parameters */
 	double learnRate;
@@ -111,22 +113,34 @@ public class BiasedBaseline implements RatingPredictor {
 	}
 	
 	
+	/**
+	 * Set the visiting order of the ratings, for example a seeded or block
+	 * shuffled one. By default a new full shuffle order is used
+	 * 
+	 * @param epochOrder the epochOrder to set
+	 */
+	public void setEpochOrder(EpochOrder epochOrder) {
+		this.epochOrder = epochOrder;
+	}
+	
 	/**
 	 * Learn the user and item bias with given max iteration number
 	 */
 	private void learnBias(){
+		if(epochOrder == null || epochOrder.size() != trainNumber)
+			epochOrder = new EpochOrder(trainNumber);
 		for(int iter = 1; iter <= maxIterNumber; ++iter){
-			iterate(ratings.getRandomIndex());
+			iterate(epochOrder.next());
 		}
 	}
 	
 	/**
 	 * Update user bias and item bias in each iteration
 	 */
-	private void iterate(ArrayList<Integer> list){
+	private void iterate(int[] order){
 		int user_id, item_id, rating;
 		double prediction, gradient;
-		for(int index = 0; index != trainNumber; ++index){
+		for(int index : order){
 			
 			user_id = ratings.getUser(index);
 			item_id = ratings.getItem(index);
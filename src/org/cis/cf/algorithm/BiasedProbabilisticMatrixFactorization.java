@@ -1,8 +1,8 @@
 package org.cis.cf.algorithm;
 
-import java.util.ArrayList;
 import java.util.Random;
 
+import org.cis.data.EpochOrder;
 import org.cis.data.Ratings;
 
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
@@ -36,6 +36,8 @@ public class BiasedProbabilisticMatrixFactorization implements RatingPredictor{
 	
 	/** number of training ratings */
 	int trainNumber;
+	/** the visiting order of the ratings in each epoch */
+	EpochOrder epochOrder;
 	
 	/** global bias of all the ratings */ 
 	double globalBias;
@@ -234,25 +236,37 @@ public class BiasedProbabilisticMatrixFactorization implements RatingPredictor{
 		learnFeatures();
 	}
 	
+	/**
+	 * Set the visiting order of the ratings, for example a seeded or block
+	 * shuffled one. By default a new full shuffle order is used
+	 * 
+	 * @param epochOrder the epochOrder to set
+	 */
+	public void setEpochOrder(EpochOrder epochOrder) {
+		this.epochOrder = epochOrder;
+	}
+	
 	/**
 	 * Update the parameter with given max iteration number
 	 */
 	private void learnFeatures(){
+		if(epochOrder == null || epochOrder.size() != trainNumber)
+			epochOrder = new EpochOrder(trainNumber);
 		for(int iter = 1; iter <= maxIterNumber; ++iter){
-			iterate(ratings.getRandomIndex());
+			iterate(epochOrder.next());
 		}
 	}
 	
 	/**
 	 * In an iteration loop, update the user factors and item factors
-	 * @param list the randomly generated index list
+	 * @param order the rating indices in visiting order
 	 */
-	private void iterate(ArrayList<Integer> list){
+	private void iterate(int[] order){
 		
 		int user_id, item_id, rating;
 		double err, score, sig_score, prediction, gradient;
 		Algebra algebra = new Algebra();
-		for(int index = 0; index != trainNumber; ++index){
+		for(int index : order){
 			
 			user_id = ratings.getUser(index);
 			item_id = ratings.getItem(index);
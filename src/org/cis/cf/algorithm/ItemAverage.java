@@ -1,22 +1,20 @@
 package org.cis.cf.algorithm;
 
-import java.util.ArrayList;
+import java.io.IOException;
 
+import org.cis.data.RatingStatistics;
 import org.cis.data.Ratings;
+import org.cis.io.RatingStream;
 
 public class ItemAverage implements RatingPredictor{
 
 	/** training data set of ratings */
 	Ratings ratings;
-	/** number of items */
-	int itemNumber;
-	/** number of training ratings */
-	int trainNumber;
+	/** training ratings streamed from disk, used instead of ratings when not null */
+	RatingStream stream;
 	
-	/** the sum of ratings for each item */
-	ArrayList<Integer> itemRatingSum;
-	/** the count of ratings for each item */
-	ArrayList<Integer> itemRatingCount;
+	/** the per item sums and counts of ratings */
+	RatingStatistics statistics;
 	/** global rating average */ 
 	double globalBias;
 	
@@ -26,32 +24,49 @@ public class ItemAverage implements RatingPredictor{
 	 * @param ratings training ratings
 	 */
 	public ItemAverage(Ratings ratings) {
-		this.ratings     = ratings;
-		this.itemNumber  = ratings.totalItemNumber();
-		this.trainNumber = ratings.getCount();
-		this.globalBias  = ratings.averageRating();
-		
-		itemRatingSum   = new ArrayList<Integer>();
-		itemRatingCount = new ArrayList<Integer>();
-		for(int u = 0; u <= itemNumber; ++u){
-			itemRatingSum.add(0);
-			itemRatingCount.add(0);
-		}	
+		this.ratings = ratings;
+	}
+	
+	/**
+	 * Construct ItemAverage algorithm trained in one pass over streamed ratings,
+	 * the training data is never held in memory
+	 * 
+	 * @param stream the stream of the training ratings
+	 */
+	public ItemAverage(RatingStream stream) {
+		this.stream = stream;
 	}
 	
 	/**
 	 * Train the model of Item Average
 	 */
 	public void trainModel() {
-		int index;
-		int item_id, rating;
-		for( index = 0; index != trainNumber; ++index){
-			item_id = ratings.getItem(index);
-			rating  = ratings.getRating(index);
-			
-			itemRatingSum.set(item_id, itemRatingSum.get(item_id) + rating);
-			itemRatingCount.set(item_id, itemRatingCount.get(item_id) + 1);
+		if(stream != null){
+			trainFromStream();
+			return;
 		}
+		
+		statistics = ratings.getStatistics();
+		globalBias = statistics.getMean();
+	}
+
+	/**
+	 * Accumulate the sums and counts in one pass over the stream
+	 */
+	private void trainFromStream() {
+		statistics = new RatingStatistics();
+		try {
+			stream.forEachBatch(new RatingStream.BatchHandler() {
+				public void handle(RatingStream.Batch batch) {
+					for(int k = 0; k != batch.size; ++k)
+						statistics.add(batch.users[k], batch.items[k], batch.values[k]);
+				}
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		this.globalBias = statistics.getMean();
 	}
 
 	/**
@@ -59,13 +74,10 @@ public class ItemAverage implements RatingPredictor{
 	 */
 	public double predict(int user_id, int item_id, boolean bound) {
 		
-		if(item_id >= itemNumber)
-			return globalBias;
-		
-		if(itemRatingCount.get(item_id) == 0)
+		if(statistics.getItemCount(item_id) == 0)
 			return globalBias;
 		
-		return (double) itemRatingSum.get(item_id) / itemRatingCount.get(item_id);
+		return statistics.getItemMean(item_id);
 	}
 
 
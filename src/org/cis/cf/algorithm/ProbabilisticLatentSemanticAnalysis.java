@@ -1,8 +1,8 @@
 package org.cis.cf.algorithm;
 
-import java.util.ArrayList;
 import java.util.Random;
 
+import org.cis.data.RatingIndex;
 import org.cis.data.Ratings;
 
 
@@ -92,36 +92,32 @@ public class ProbabilisticLatentSemanticAnalysis implements RatingPredictor {
 	 * Convert training data from ratings to user indexed data and item indexed data
 	 */
 	private void convertData() {
-		ArrayList<ArrayList<Integer>> userList = ratings.getIndicesByUser();
+		RatingIndex userIndex = ratings.getUserIndex();
 		for( int u = 1; u <= userNumber; ++u){
 			int index,size, item, rating;
-			size = userList.get(u).size();
+			size = userIndex.degree(u);
 			Q[u] = new double[size][hidVariables];
 			userInfo[u] = new int[size];
 			for(int i = 0; i != size; ++i){
-				index  = userList.get(u).get(i);
+				index  = userIndex.posting(userIndex.start(u) + i);
 				item   = ratings.getItem(index);
 				rating = ratings.getRating(index);
 				userInfo[u][i] = item * 10 + rating;
 			}
 		}
-		userList.clear();
 		
-		ArrayList<ArrayList<Integer>> itemList = ratings.getIndicesByItem();
+		RatingIndex itemIndex = ratings.getItemIndex();
 		for( int i = 1; i <= itemNumber; ++i){
 			int index, size, user, rating;
-			size = itemList.get(i).size();
+			size = itemIndex.degree(i);
 			itemInfo[i] = new int[size];
 			for( int u = 0; u != size; ++u){
-				index  = itemList.get(i).get(u);
+				index  = itemIndex.posting(itemIndex.start(i) + u);
 				user   = ratings.getUser(index);
 				rating = ratings.getRating(index);
 				itemInfo[i][u] = user * 10 + rating;
 			}
 		}
-		
-		itemList.clear();
-		ratings.clear();
 	}
 	
 	/**
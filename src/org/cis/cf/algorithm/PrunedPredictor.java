@@ -0,0 +1,55 @@
+package org.cis.cf.algorithm;
+
+import org.cis.data.KCore;
+import org.cis.data.Reordering;
+
+/**
+ * This class implementing a rating predictor trained on the k-core of the
+ * ratings: a query whose user and item are both in the core is answered by
+ * the core model with the core IDs, any other query by a fallback predictor
+ * trained on all the ratings, such as BiasedBaseline or UserAverage
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class PrunedPredictor implements RatingPredictor {
+
+	/** the predictor trained on core.getRatings() */
+	RatingPredictor model;
+	/** the predictor trained on all the ratings */
+	RatingPredictor fallback;
+	/** the core of the ratings */
+	KCore core;
+
+	/**
+	 * Construct the predictor
+	 *
+	 * @param model the predictor trained on core.getRatings()
+	 * @param fallback the predictor trained on all the ratings
+	 * @param core the core of the ratings
+	 */
+	public PrunedPredictor(RatingPredictor model, RatingPredictor fallback, KCore core) {
+		this.model = model;
+		this.fallback = fallback;
+		this.core = core;
+	}
+
+	/**
+	 * Train the core model and the fallback predictor
+	 */
+	public void trainModel() {
+		model.trainModel();
+		fallback.trainModel();
+	}
+
+	/**
+	 * Predict the rating value with the original user and item IDs
+	 */
+	public double predict(int user_id, int item_id, boolean bound) {
+		if(!core.hasUser(user_id) || !core.hasItem(item_id))
+			return fallback.predict(user_id, item_id, bound);
+		Reordering reordering = core.getReordering();
+		return model.predict(reordering.toNewUser(user_id), reordering.toNewItem(item_id), bound);
+	}
+
+}
@@ -0,0 +1,45 @@
+package org.cis.cf.algorithm;
+
+import org.cis.data.Reordering;
+
+/**
+ * This class implementing a rating predictor trained on reordered IDs which
+ * answers in the original IDs: the user and item IDs of a query are translated
+ * to the new IDs before they reach the wrapped predictor
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class ReorderedPredictor implements RatingPredictor {
+
+	/** the predictor trained on the reordered ratings */
+	RatingPredictor predictor;
+	/** the reordering of the IDs */
+	Reordering reordering;
+
+	/**
+	 * Construct the wrapper of a predictor
+	 *
+	 * @param predictor the predictor trained on reordering.apply(ratings)
+	 * @param reordering the reordering of the IDs
+	 */
+	public ReorderedPredictor(RatingPredictor predictor, Reordering reordering) {
+		this.predictor = predictor;
+		this.reordering = reordering;
+	}
+
+	/**
+	 * Train the wrapped predictor
+	 */
+	public void trainModel() {
+		predictor.trainModel();
+	}
+
+	/**
+	 * Predict the rating value with the original user and item IDs
+	 */
+	public double predict(int user_id, int item_id, boolean bound) {
+		return predictor.predict(reordering.toNewUser(user_id), reordering.toNewItem(item_id), bound);
+	}
+
+}
@@ -4,6 +4,8 @@ package org.cis.cf.algorithm;
 import java.util.ArrayList;
 import java.util.Random;
 
+import org.cis.data.CompressedPostings;
+import org.cis.data.RatingIndex;
 import org.cis.data.Ratings;
 import org.cis.util.*;
 
@@ -47,8 +49,12 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 	double momentum;
 	double finalMomentum;
 	
-	/** training data set indexed by user */
-	int[][] trainSet;
+	/** training data set indexed by user, compressed */
+	CompressedPostings trainSet;
+	/** the items of the current user, decoded from trainSet */
+	int[] userItems;
+	/** the ratings of the current user, decoded from trainSet */
+	int[] userRates;
 	
 	/** test data set indexed by user */
 	ArrayList<Integer>[] testSet;
@@ -148,7 +154,6 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 		negvissoftmax = new char[itemNumber];
 		moviecount = new int[itemNumber];
 		
-		trainSet = new int[userNumber][];
 		testSet  = new ArrayList[userNumber];
 		for( int u = 0; u != userNumber; ++u)
 			testSet[u] = new ArrayList<Integer>();
@@ -159,37 +164,24 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 	 * Convert training data and test data from Ratings to user indexed form
 	 */
 	private void convertData() {
-		ArrayList<ArrayList<Integer>> userList = ratings.getIndicesByUser();
-		for( int u = 0; u != userNumber; ++u){
-			int index,size, item, rating;
-			size = userList.get(u).size();
-			trainSet[u] = new int[size];
-			for(int i = 0; i != size; ++i){
-				index  = userList.get(u).get(i);
-				item   = ratings.getItem(index);
-				rating = ratings.getRating(index);
-				trainSet[u][i] = item * 10 + rating;
-			}
-		}
-		ratings.clear();
-		userList.clear();
+		trainSet  = CompressedPostings.build(ratings, true);
+		userItems = new int[trainSet.maxDegree()];
+		userRates = new int[trainSet.maxDegree()];
 		
 		int testUserNumber = testRatings.totalUserNumber();
-		ArrayList<ArrayList<Integer>> testUserList = testRatings.getIndicesByUser();
+		RatingIndex testUserIndex = testRatings.getUserIndex();
 		for( int u = 0; u != userNumber; ++u){
 			int index,size, item, rating;
 			if( u < testUserNumber){
-				size = testUserList.get(u).size();
+				size = testUserIndex.degree(u);
 				for (int i = 0; i != size; ++i) {
-					index = testUserList.get(u).get(i);
+					index = testUserIndex.posting(testUserIndex.start(u) + i);
 					item = testRatings.getItem(index);
 					rating = testRatings.getRating(index);
 					testSet[u].add(item * 10 + rating);
 				}
 			}
 		}
-		testRatings.clear();
-		testUserList.clear();
 	}
 	
 	/**
@@ -200,13 +192,13 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 		ZeroSetter.zero(moviecount, itemNumber, softmax);
 		
 		for(int user = 0; user < userNumber; user++) {
-			int num = trainSet[user].length;
+			int num = trainSet.decode(user, userItems, userRates);
 			
 			for(int j = 0; j < num; j++) {
 				//movie
-				int m = trainSet[user][j] / 10 - 1;
+				int m = userItems[j] - 1;
 				//rating
-				int r = trainSet[user][j] % 10 - 1;
+				int r = userRates[j] - 1;
 				moviecount[m][r]++;
 			}	
 		}
@@ -269,15 +261,15 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 			
 			for(int user = 0; user < userNumber; user++) {
 				
-				int num = trainSet[user].length;
+				int num = trainSet.decode(user, userItems, userRates);
 				double[] sumW = new double[featureNumber];
 			    ZeroSetter.zero(sumW, featureNumber);
 			    
 			    ZeroSetter.zero(negvisprobs, itemNumber, softmax);
 			    
 			    for(int i = 0; i < num; i++) {
-			    	int m = trainSet[user][i] / 10 - 1;
-					int r = trainSet[user][i] % 10 - 1;
+			    	int m = userItems[i] - 1;
+					int r = userRates[i] - 1;
 					moviecount[m]++;
 					
 					posvisact[m][r] += 1.0;
@@ -308,7 +300,7 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 			    	boolean finalTStep = (stepT+1 >= tSteps);
 			    	
 			    	for(int i = 0; i < num; i++) {
-			    		int m = trainSet[user][i] / 10 - 1;
+			    		int m = userItems[i] - 1;
 			    		
 			    		for(int h = 0; h < featureNumber; h++) {
 			    			if(curposhidstates[h] == 1) {
@@ -352,7 +344,7 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 			    	
 			    	ZeroSetter.zero(sumW, featureNumber);
 			    	for(int i = 0; i < num; i++) {
-				    	int m = trainSet[user][i] / 10 - 1;
+				    	int m = userItems[i] - 1;
 						
 						for(int h = 0; h < featureNumber; h++) {
 							sumW[h]  += weights[m][negvissoftmax[m]][h];
@@ -380,8 +372,8 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 			    } while ( ++stepT < tSteps );
 			    
 			    for(int i = 0; i < num; i++) {
-			    	int m = trainSet[user][i] / 10 - 1;
-					int r = trainSet[user][i] % 10 - 1;
+			    	int m = userItems[i] - 1;
+					int r = userRates[i] - 1;
 					
 					for(int h = 0; h < featureNumber; h++) {
 						if ( poshidstates[h] == 1 ) {
@@ -524,7 +516,7 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 		double[]   poshidprobs = new double[featureNumber];
 		
 		for(int user = 0; user < userNumber; user++) {
-			int trainNumber = trainSet[user].length;
+			int trainNumber = trainSet.decode(user, userItems, userRates);
 			int testNumber  = testSet[user].size();
 			
 			tc += trainNumber;
@@ -535,8 +527,8 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 			ZeroSetter.zero(negvisprobs, itemNumber, softmax);
 			
 			for(int i = 0; i < trainNumber; i++) {
-				int item = trainSet[user][i] / 10 - 1;
-				int rate = trainSet[user][i] % 10 - 1;
+				int item = userItems[i] - 1;
+				int rate = userRates[i] - 1;
 				
 				for(int h = 0; h < featureNumber; h++) {
 					sumW[h] += weights[item][rate][h];
@@ -551,7 +543,7 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 			for(int i = 0; i < trainNumber + testNumber; i++) {
 				int item;
 				if(i < trainNumber)
-					item = trainSet[user][i] / 10 - 1;
+					item = userItems[i] - 1;
 				else
 					item = testSet[user].get(i - trainNumber) / 10 - 1;
 				for(int h = 0; h < featureNumber; h++) {
@@ -578,8 +570,8 @@ public class RestrictedBoltzmannMachines implements RatingPredictor{
 			}
 			
 			for(int i = 0; i < trainNumber; i++) {
-				int item = trainSet[user][i] / 10 - 1;
-				int rate = trainSet[user][i] % 10 - 1;
+				int item = userItems[i] - 1;
+				int rate = userRates[i] - 1;
 				
 				double predict = 0;
 				for(int r = 0; r < softmax; r++) {
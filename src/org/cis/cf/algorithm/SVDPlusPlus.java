@@ -1,8 +1,9 @@
 package org.cis.cf.algorithm;
 
-import java.util.ArrayList;
 import java.util.Random;
 
+import org.cis.data.RatingIndex;
+import org.cis.data.EpochOrder;
 import org.cis.data.Ratings;
 
 import cern.colt.matrix.impl.DenseDoubleMatrix1D;
@@ -43,6 +44,8 @@ public class SVDPlusPlus implements RatingPredictor{
 	
 	/** number of training ratings */
 	int trainNumber;
+	/** the visiting order of the ratings in each epoch */
+	EpochOrder epochOrder;
 	
 	/** global average of all the ratings */ 
 	double globalBias;
@@ -135,13 +138,12 @@ public class SVDPlusPlus implements RatingPredictor{
 	 */
 	private void getImplicitInfo(){
 		whoRatedWhat = new int[userNumber+1][];
-		ArrayList<Integer> list = new ArrayList<Integer>();
+		RatingIndex userIndex = ratings.getUserIndex();
 		for(int u = 1; u <= userNumber; ++u){
-			list = ratings.getItemsByUser(u);
-			int size = list.size();
+			int size = userIndex.degree(u);
 			whoRatedWhat[u] = new int[size];
 			for( int i = 0; i != size; ++i)
-				whoRatedWhat[u][i] = list.get(i);
+				whoRatedWhat[u][i] = ratings.getItem(userIndex.posting(userIndex.start(u) + i));
 		}
 	}
 	
@@ -177,24 +179,36 @@ public class SVDPlusPlus implements RatingPredictor{
 		calcUserFeatures();
 	}
 	
+	/**
+	 * Set the visiting order of the ratings, for example a seeded or block
+	 * shuffled one. By default a new full shuffle order is used
+	 * 
+	 * @param epochOrder the epochOrder to set
+	 */
+	public void setEpochOrder(EpochOrder epochOrder) {
+		this.epochOrder = epochOrder;
+	}
+	
 	/**
 	 * Update the parameter with given max iteration number
 	 */
 	private void learnFeatures(){
+		if(epochOrder == null || epochOrder.size() != trainNumber)
+			epochOrder = new EpochOrder(trainNumber);
 		for(int iter = 1; iter <= maxIterNumber; ++iter){
-			iterate(ratings.getRandomIndex());
+			iterate(epochOrder.next());
 		}
 	}
 
 	/**
 	 * In an iteration loop, update the user factors and item factors
-	 * @param list the randomly generated index list
+	 * @param order the rating indices in visiting order
 	 */
-	private void iterate(ArrayList<Integer> list){
+	private void iterate(int[] order){
 		int user_id, item_id, rating;
 		double err, prediction;
 		Algebra algebra = new Algebra();
-		for(int index : list){
+		for(int index : order){
 			
 			user_id = ratings.getUser(index);
 			item_id = ratings.getItem(index);
@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Random;
 
 import org.cis.data.Ratings;
+import org.cis.matrix.ImmutableSparseBooleanMatrix;
+import org.cis.matrix.ImmutableSparseDoubleMatrix;
 import org.cis.matrix.SparseBooleanMatrix;
 
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
@@ -21,9 +23,11 @@ import cern.colt.matrix.linalg.Algebra;
 public class SocialMatrixFactorization extends BiasedProbabilisticMatrixFactorization {
 
 	/** user social network */
-	SparseBooleanMatrix user_connections;
-	/** user social network reversed */
-	SparseBooleanMatrix user_reverse_connections;
+	ImmutableSparseBooleanMatrix user_connections;
+	/** user social network weighted by the trust 1 / (number of connections) */
+	ImmutableSparseDoubleMatrix user_trust;
+	/** user_trust reversed */
+	ImmutableSparseDoubleMatrix user_reverse_trust;
 	/** social regularization */
 	double socialReg;
 	
@@ -37,9 +41,23 @@ public class SocialMatrixFactorization extends BiasedProbabilisticMatrixFactoriz
 	 */
 	public SocialMatrixFactorization(Ratings ratings, int featureNumber, 
 			SparseBooleanMatrix user_connections, double socialReg) {
+		this(ratings, featureNumber, ImmutableSparseBooleanMatrix.from(user_connections), socialReg);
+	}
+	
+	/**
+	 * Construct SocialMF algorithm
+	 * 
+	 * @param ratings
+	 * @param featureNumber
+	 * @param user_connections
+	 * @param socialReg
+	 */
+	public SocialMatrixFactorization(Ratings ratings, int featureNumber, 
+			ImmutableSparseBooleanMatrix user_connections, double socialReg) {
 		super(ratings, featureNumber);
 		this.user_connections = user_connections;
-		this.user_reverse_connections = user_connections.transpose();
+		this.user_trust = ImmutableSparseDoubleMatrix.rowNormalized(user_connections);
+		this.user_reverse_trust = user_trust.transpose();
 		this.socialReg = socialReg;
 	}
 	
@@ -62,10 +80,34 @@ public class SocialMatrixFactorization extends BiasedProbabilisticMatrixFactoriz
 			double learnRate, double userReg, double itemReg, 
 			double biasLearnRate, double biasUserReg, double biasItemReg,
 			int maxIterNumber, SparseBooleanMatrix user_connections, double socialReg) {
+		this(ratings, featureNumber, learnRate, userReg, itemReg, biasLearnRate, biasUserReg, biasItemReg,
+				maxIterNumber, ImmutableSparseBooleanMatrix.from(user_connections), socialReg);
+	}
+	
+	/**
+	 * Construct SocialMF algorithm
+	 * 
+	 * @param ratings
+	 * @param featureNumber
+	 * @param learnRate
+	 * @param userReg
+	 * @param itemReg
+	 * @param biasLearnRate
+	 * @param biasUserReg
+	 * @param biasItemReg
+	 * @param maxIterNumber
+	 * @param user_connections
+	 * @param socialReg
+	 */
+	public SocialMatrixFactorization(Ratings ratings, int featureNumber,
+			double learnRate, double userReg, double itemReg, 
+			double biasLearnRate, double biasUserReg, double biasItemReg,
+			int maxIterNumber, ImmutableSparseBooleanMatrix user_connections, double socialReg) {
 
 		super(ratings, featureNumber, learnRate, userReg, itemReg, biasLearnRate,biasUserReg, biasItemReg, maxIterNumber);
 		this.user_connections = user_connections;
-		this.user_reverse_connections = user_connections.transpose();
+		this.user_trust = ImmutableSparseDoubleMatrix.rowNormalized(user_connections);
+		this.user_reverse_trust = user_trust.transpose();
 		this.socialReg = socialReg;
 
 	}
@@ -170,57 +212,37 @@ public class SocialMatrixFactorization extends BiasedProbabilisticMatrixFactoriz
 			for(int f = 0;  f < featureNumber; f++)
 				item_factors_gradient.setQuick(i, f, item_factors_gradient.getQuick(i, f) + itemFeatures.getQuick(i, f) * itemReg);
 
-		// I.3 social network regularization -- see eq. (13) in the paper
-			for (int u = 0; u < userNumber + 1; u++)
-			{
-				double [] sum_connections   = new double[featureNumber];
-				double bias_sum_connections = 0;
-				int num_connections         = user_connections.getNumEntriesByRow(u);
-				
-				for(int v : user_connections.getRow(u)){
-					bias_sum_connections += userBias[v];
-					for (int f = 0; f < featureNumber; f++)
-						sum_connections[f] += userFeatures.getQuick(v, f);
-				}
-				
-				if (num_connections != 0)
-				{
-					user_bias_gradient[u] += socialReg * (userBias[u] - bias_sum_connections / num_connections);
-					for (int f = 0; f < featureNumber; f++)
-						user_factors_gradient.setQuick(u, f, user_factors_gradient.getQuick(u, f)
-								+ socialReg * (userFeatures.getQuick(u, f) - sum_connections[f] / num_connections));
-				}
-				
-				for (int v : user_reverse_connections.getRow(u)){
-					if (user_connections.getNumEntriesByRow(v) != 0){
-						
-						double trust_v = (float) 1 / user_connections.getNumEntriesByRow(v);
-						double neg_trust_times_reg = - socialReg * trust_v;
-
-						double bias_diff = 0;
-						double[] factor_diffs = new double[featureNumber];
-						for (int w : user_connections.getRow(v))
-						{
-							bias_diff -= userBias[w];
-							for (int f = 0; f < featureNumber; f++)
-								factor_diffs[f] -= userFeatures.getQuick(w, f);
-						}
-						
-						bias_diff *= trust_v; // normalize
-						bias_diff += userBias[v];
-						user_bias_gradient[u] += neg_trust_times_reg * bias_diff;
-
-						for (int f = 0; f < featureNumber; f++)
-						{
-							factor_diffs[f] *= trust_v; // normalize
-							factor_diffs[f] += userFeatures.getQuick(v, f);
-							user_factors_gradient.setQuick(u, f, user_factors_gradient.getQuick(u, f)
-									+ neg_trust_times_reg * factor_diffs[f]);
-						}
-					}
-				}
-
-			}
+		// I.3 social network regularization -- see eq. (13) in the paper, on the
+		//     factors and the bias of each user X: with the trust matrix T and
+		//     D = X - T X on the users who trust someone, the gradient is
+		//     socialReg * (D - T' D), two products of the sparse trust matrix
+		int width = featureNumber + 1;
+		int socialNumber = Math.max(userNumber + 1,
+				Math.max(user_trust.getRowDimension(), user_trust.getColumnDimension()));
+		double[][] social_factors = new double[socialNumber][width];
+		for (int u = 0; u < userNumber + 1; u++)
+		{
+			for (int f = 0; f < featureNumber; f++)
+				social_factors[u][f] = userFeatures.getQuick(u, f);
+			social_factors[u][featureNumber] = userBias[u];
+		}
+		double[][] social_diffs = new double[socialNumber][width];
+		user_trust.multiply(social_factors, social_diffs);
+		for (int u = 0; u < socialNumber; u++)
+		{
+			boolean trusting = user_trust.getNumEntriesByRow(u) != 0;
+			for (int f = 0; f < width; f++)
+				social_diffs[u][f] = trusting ? social_factors[u][f] - social_diffs[u][f] : 0;
+		}
+		double[][] trusted_diffs = new double[socialNumber][width];
+		user_reverse_trust.multiply(social_diffs, trusted_diffs);
+		for (int u = 0; u < userNumber + 1; u++)
+		{
+			for (int f = 0; f < featureNumber; f++)
+				user_factors_gradient.setQuick(u, f, user_factors_gradient.getQuick(u, f)
+						+ socialReg * (social_diffs[u][f] - trusted_diffs[u][f]));
+			user_bias_gradient[u] += socialReg * (social_diffs[u][featureNumber] - trusted_diffs[u][featureNumber]);
+		}
 
 		// II. apply gradient descent step
 		for ( user_id = 0; user_id < userNumber + 1; user_id++)
@@ -1,22 +1,20 @@
 package org.cis.cf.algorithm;
 
-import java.util.ArrayList;
+import java.io.IOException;
 
+import org.cis.data.RatingStatistics;
 import org.cis.data.Ratings;
+import org.cis.io.RatingStream;
 
 public class UserAverage implements RatingPredictor{
 
 	/** training data set of ratings */
 	private Ratings ratings;
-	/** number of users */
-	private int userNumber;
-	/** number of training ratings */
-	private int trainNumber;
+	/** training ratings streamed from disk, used instead of ratings when not null */
+	private RatingStream stream;
 	
-	/** the sum of ratings for each user */
-	private ArrayList<Integer> userRatingSum;
-	/** the count of ratings for each user */
-	private ArrayList<Integer> userRatingCount;
+	/** the per user sums and counts of ratings */
+	private RatingStatistics statistics;
 	/** global rating average */ 
 	private double globalBias;
 	
@@ -26,32 +24,49 @@ public class UserAverage implements RatingPredictor{
 	 * @param ratings training ratings
 	 */
 	public UserAverage(Ratings ratings) {
-		this.ratings     = ratings;
-		this.userNumber  = ratings.totalUserNumber();
-		this.trainNumber = ratings.getCount();
-		this.globalBias  = ratings.averageRating();
-		
-		userRatingSum   = new ArrayList<Integer>();
-		userRatingCount = new ArrayList<Integer>();
-		for(int u = 0; u <= userNumber; ++u){
-			userRatingSum.add(0);
-			userRatingCount.add(0);
-		}	
+		this.ratings = ratings;
+	}
+	
+	/**
+	 * Construct UserAverage algorithm trained in one pass over streamed ratings,
+	 * the training data is never held in memory
+	 * 
+	 * @param stream the stream of the training ratings
+	 */
+	public UserAverage(RatingStream stream) {
+		this.stream = stream;
 	}
 	
 	/**
-	 * Train the model of Item Average
+	 * Train the model of User Average
 	 */
 	public void trainModel() {
-		int index;
-		int user_id, rating;
-		for( index = 0; index != trainNumber; ++index){
-			user_id = ratings.getUser(index);
-			rating  = ratings.getRating(index);
-			
-			userRatingSum.set(user_id, userRatingSum.get(user_id) + rating);
-			userRatingCount.set(user_id, userRatingCount.get(user_id) + 1);
+		if(stream != null){
+			trainFromStream();
+			return;
 		}
+		
+		statistics = ratings.getStatistics();
+		globalBias = statistics.getMean();
+	}
+
+	/**
+	 * Accumulate the sums and counts in one pass over the stream
+	 */
+	private void trainFromStream() {
+		statistics = new RatingStatistics();
+		try {
+			stream.forEachBatch(new RatingStream.BatchHandler() {
+				public void handle(RatingStream.Batch batch) {
+					for(int k = 0; k != batch.size; ++k)
+						statistics.add(batch.users[k], batch.items[k], batch.values[k]);
+				}
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		this.globalBias = statistics.getMean();
 	}
 
 	/**
@@ -59,13 +74,10 @@ public class UserAverage implements RatingPredictor{
 	 */
 	public double predict(int user_id, int item_id, boolean bound) {
 		
-		if(user_id >= userNumber)
-			return globalBias;
-		
-		if(userRatingCount.get(user_id) == 0)
+		if(statistics.getUserCount(user_id) == 0)
 			return globalBias;
 		
-		return (double) userRatingSum.get(user_id) / userRatingCount.get(user_id);
+		return statistics.getUserMean(user_id);
 	}
 
 }
@@ -1,6 +1,10 @@
 package org.cis.cf.test;
 
 import org.cis.cf.algorithm.AlternatingLeastSquares;
+import org.cis.cf.algorithm.BiasedBaseline;
+import org.cis.cf.algorithm.PrunedPredictor;
+import org.cis.cf.algorithm.RatingPredictor;
+import org.cis.data.KCore;
 import org.cis.data.Ratings;
 import org.cis.eval.RmseEvaluator;
 import org.cis.io.MovielensRatingsReader;
@@ -18,7 +22,7 @@ public class AlternatingLeastSquaresTest {
 		//command: java org.cis.cf.test.AlternatingLeastSquaresTest ../data/movielens/u1.base ../data/movielens/u1.test 10 0.125 0.125 25
 		
 		
-		if(args.length != 6){
+		if(args.length != 6 && args.length != 8){
 			System.out.println("Useage:");
 			System.out.println("1, Training data path");
 			System.out.println("2, Test data path");
@@ -26,6 +30,8 @@ public class AlternatingLeastSquaresTest {
 			System.out.println("4, Regularization coeffient for user factors");
 			System.out.println("5, Regularization coeffient for item factors");
 			System.out.println("6, Max round of training");
+			System.out.println("7, (optional) min number of ratings of a trained user");
+			System.out.println("8, (optional) min number of ratings of a trained item");
 		} else {
 			String trainFile = args[0];
 			String testFile = args[1];
@@ -39,18 +45,29 @@ public class AlternatingLeastSquaresTest {
 			Ratings trainData  = read.read(trainFile);
 			Ratings testData   = read.read(testFile);
 			
+			KCore core = null;
+			if(args.length == 8){
+				core = KCore.compute(trainData, Integer.parseInt(args[6]), Integer.parseInt(args[7]));
+				System.out.println("core: " + core.keptUserNumber() + " users, " + core.keptItemNumber() + " items, "
+						+ core.getRatings().getCount() + " of " + trainData.getCount() + " ratings");
+			}
+			
 			AlternatingLeastSquares recommender = new AlternatingLeastSquares(
-					trainData,
+					(core != null) ? core.getRatings() : trainData,
 					featureNumber,
 					userReg,
 					itemReg,
 					maxIter
 					);
 			
-			recommender.trainModel();
+			RatingPredictor predictor = recommender;
+			if(core != null)
+				predictor = new PrunedPredictor(recommender, new BiasedBaseline(trainData, 50, 0.05), core);
+			
+			predictor.trainModel();
 			
 			RmseEvaluator evaluator = new RmseEvaluator();
-			System.out.println(evaluator.evaluate(recommender, testData));
+			System.out.println(evaluator.evaluate(predictor, testData));
 		}
 	}
 }
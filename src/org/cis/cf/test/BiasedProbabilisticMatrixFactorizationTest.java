@@ -2,6 +2,7 @@ package org.cis.cf.test;
 
 import org.cis.cf.algorithm.BiasedProbabilisticMatrixFactorization;
 import org.cis.data.Ratings;
+import org.cis.data.TiledEpochOrder;
 import org.cis.eval.RmseEvaluator;
 import org.cis.io.MovielensRatingsReader;
 
@@ -18,7 +19,7 @@ public class BiasedProbabilisticMatrixFactorizationTest {
 		//command: java org.cis.cf.test.BiasedProbabilisticMatrixFactorizationTest ../data/movielens/u1.base ../data/movielens/u1.test 10 0.01 0.01 0.01 1 0.01 0.01 25
 		
 		
-		if(args.length != 10){
+		if(args.length != 10 && args.length != 11){
 			System.out.println("Useage:");
 			System.out.println("1, Training data path");
 			System.out.println("2, Test data path");
@@ -30,6 +31,7 @@ public class BiasedProbabilisticMatrixFactorizationTest {
 			System.out.println("8, Regularization coeffient for user bias");
 			System.out.println("9, Regularization coeffient for item bias");
 			System.out.println("10, Max round of training");
+			System.out.println("11, (optional) 1 to visit the ratings by cache sized tiles");
 		} else {
 			String trainFile = args[0];
 			String testFile = args[1];
@@ -62,7 +64,15 @@ public class BiasedProbabilisticMatrixFactorizationTest {
 					maxIter
 					);
 			
+			if(args.length == 11 && Integer.parseInt(args[10]) == 1){
+				int blockSize = TiledEpochOrder.blockSizeFor(featureNumber);
+				recommender.setEpochOrder(new TiledEpochOrder(trainData, blockSize, blockSize));
+			}
+			
+			long start = System.nanoTime();
 			recommender.trainModel();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println("training: " + (long) (trainData.getCount() * (double) maxIter / seconds) + " ratings/s");
 			
 			RmseEvaluator evaluator = new RmseEvaluator();
 			System.out.println(evaluator.evaluate(recommender, testData));
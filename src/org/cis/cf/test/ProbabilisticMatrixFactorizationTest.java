@@ -1,7 +1,11 @@
 package org.cis.cf.test;
 
 import org.cis.cf.algorithm.ProbabilisticMatrixFactorization;
+import org.cis.cf.algorithm.RatingPredictor;
+import org.cis.cf.algorithm.ReorderedPredictor;
 import org.cis.data.Ratings;
+import org.cis.data.Reordering;
+import org.cis.data.TiledEpochOrder;
 import org.cis.eval.RmseEvaluator;
 import org.cis.io.MovielensRatingsReader;
 
@@ -17,7 +21,7 @@ public class ProbabilisticMatrixFactorizationTest {
 		//command: java org.cis.cf.test.ProbabilisticMatrixFactorizationTest ../data/movielens/u1.base ../data/movielens/u1.test 10 0.01 0.01 0.01 25
 		
 		
-		if(args.length != 7){
+		if(args.length != 7 && args.length != 8){
 			System.out.println("Useage:");
 			System.out.println("1, Training data path");
 			System.out.println("2, Test data path");
@@ -26,6 +30,7 @@ public class ProbabilisticMatrixFactorizationTest {
 			System.out.println("5, Regularization coeffient for user factors");
 			System.out.println("6, Regularization coeffient for item factors");
 			System.out.println("7, Max round of training");
+			System.out.println("8, (optional) 1 to visit the ratings by cache sized tiles, 2 to relabel the IDs in BFS order, 3 for both");
 		} else {
 			String trainFile = args[0];
 			String testFile = args[1];
@@ -40,6 +45,13 @@ public class ProbabilisticMatrixFactorizationTest {
 			Ratings trainData  = read.read(trainFile);
 			Ratings testData   = read.read(testFile);
 			
+			int mode = (args.length == 8) ? Integer.parseInt(args[7]) : 0;
+			Reordering reordering = null;
+			if((mode & 2) != 0){
+				reordering = Reordering.bfs(trainData);
+				trainData = reordering.apply(trainData);
+			}
+			
 			ProbabilisticMatrixFactorization recommender = new ProbabilisticMatrixFactorization(
 					trainData,
 					featureNumber,
@@ -49,10 +61,22 @@ public class ProbabilisticMatrixFactorizationTest {
 					maxIter
 					);
 			
+			if((mode & 1) != 0){
+				int blockSize = TiledEpochOrder.blockSizeFor(featureNumber);
+				recommender.setEpochOrder(new TiledEpochOrder(trainData, blockSize, blockSize));
+			}
+			
+			long start = System.nanoTime();
 			recommender.trainModel();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println("training: " + (long) (trainData.getCount() * (double) maxIter / seconds) + " ratings/s");
+			
+			RatingPredictor predictor = recommender;
+			if(reordering != null)
+				predictor = new ReorderedPredictor(recommender, reordering);
 			
 			RmseEvaluator evaluator = new RmseEvaluator();
-			System.out.println(evaluator.evaluate(recommender, testData));
+			System.out.println(evaluator.evaluate(predictor, testData));
 		}
 	}
 }
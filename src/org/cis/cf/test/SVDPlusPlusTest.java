@@ -1,7 +1,10 @@
 package org.cis.cf.test;
 
+import org.cis.cf.algorithm.RatingPredictor;
+import org.cis.cf.algorithm.ReorderedPredictor;
 import org.cis.cf.algorithm.SVDPlusPlus;
 import org.cis.data.Ratings;
+import org.cis.data.Reordering;
 import org.cis.eval.RmseEvaluator;
 import org.cis.io.MovielensRatingsReader;
 
@@ -18,7 +21,7 @@ public class SVDPlusPlusTest {
 		//command: java org.cis.cf.test.SVDPlusPlusTest ../data/movielens/u1.base ../data/movielens/u1.test 10 0.01 0.01 0.01 1 0.01 0.01 25
 		
 		
-		if(args.length != 10){
+		if(args.length != 10 && args.length != 11){
 			System.out.println("Useage:");
 			System.out.println("1, Training data path");
 			System.out.println("2, Test data path");
@@ -30,6 +33,7 @@ public class SVDPlusPlusTest {
 			System.out.println("8, Regularization coeffient for user bias");
 			System.out.println("9, Regularization coeffient for item bias");
 			System.out.println("10, Max round of training");
+			System.out.println("11, (optional) 1 to relabel the IDs in BFS order");
 		} else {
 			String trainFile = args[0];
 			String testFile = args[1];
@@ -50,6 +54,12 @@ public class SVDPlusPlusTest {
 			Ratings trainData  = read.read(trainFile);
 			Ratings testData   = read.read(testFile);
 			
+			Reordering reordering = null;
+			if(args.length == 11 && Integer.parseInt(args[10]) == 1){
+				reordering = Reordering.bfs(trainData);
+				trainData = reordering.apply(trainData);
+			}
+			
 			SVDPlusPlus recommender = new SVDPlusPlus(
 					trainData,
 					featureNumber,
@@ -62,10 +72,17 @@ public class SVDPlusPlusTest {
 					maxIter
 					);
 			
+			long start = System.nanoTime();
 			recommender.trainModel();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println("training: " + (long) (trainData.getCount() * (double) maxIter / seconds) + " ratings/s");
+			
+			RatingPredictor predictor = recommender;
+			if(reordering != null)
+				predictor = new ReorderedPredictor(recommender, reordering);
 			
 			RmseEvaluator evaluator = new RmseEvaluator();
-			System.out.println(evaluator.evaluate(recommender, testData));
+			System.out.println(evaluator.evaluate(predictor, testData));
 		}
 	}
 }
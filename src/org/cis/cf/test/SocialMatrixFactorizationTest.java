@@ -1,12 +1,15 @@
 package org.cis.cf.test;
 
 
+import org.cis.cf.algorithm.RatingPredictor;
+import org.cis.cf.algorithm.ReorderedPredictor;
 import org.cis.cf.algorithm.SocialMatrixFactorization;
 import org.cis.data.Ratings;
+import org.cis.data.Reordering;
 import org.cis.eval.RmseEvaluator;
 import org.cis.io.EpinionsRatingsReader;
 import org.cis.io.EpinionsSparseBooleanMatrixReader;
-import org.cis.matrix.SparseBooleanMatrix;
+import org.cis.matrix.ImmutableSparseBooleanMatrix;
 
 /**
  * This class tests the Social Matrix Factorization algorithm
@@ -21,7 +24,7 @@ public class SocialMatrixFactorizationTest {
 		//command: java org.cis.cf.test.SocialMatrixFactorizationTes ../data/epinions/ratings_data_training.txt ../data/epinions/ratings_data_testing.txt 10 0.01 0.1 0.1 1 0.1 0.1 25 ../data/epinions/trust_data.txt 1 49290
 		
 		
-		if(args.length != 13){
+		if(args.length != 13 && args.length != 14){
 			System.out.println("Useage:");
 			System.out.println("1, Training data path");
 			System.out.println("2, Test data path");
@@ -36,6 +39,7 @@ public class SocialMatrixFactorizationTest {
 			System.out.println("11, Social relations data path");
 			System.out.println("12, Social regularization");
 			System.out.println("13, user number");
+			System.out.println("14, (optional) 1 to relabel the IDs in BFS order");
 		} else {
 			String trainFile = args[0];
 			String testFile = args[1];
@@ -62,7 +66,14 @@ public class SocialMatrixFactorizationTest {
 			Ratings testData   = reader.read(testFile);
 			
 			EpinionsSparseBooleanMatrixReader social_reader = new EpinionsSparseBooleanMatrixReader();
-			SparseBooleanMatrix social_matrix = social_reader.read(socialFile, userNumber+1, userNumber+1);
+			ImmutableSparseBooleanMatrix social_matrix = social_reader.readImmutable(socialFile, userNumber+1, userNumber+1);
+			
+			Reordering reordering = null;
+			if(args.length == 14 && Integer.parseInt(args[13]) == 1){
+				reordering = Reordering.bfs(trainData);
+				trainData = reordering.apply(trainData);
+				social_matrix = reordering.apply(social_matrix);
+			}
 			
 			
 			SocialMatrixFactorization recommender = new SocialMatrixFactorization(
@@ -79,10 +90,17 @@ public class SocialMatrixFactorizationTest {
 					socialReg
 					);
 			
+			long start = System.nanoTime();
 			recommender.trainModel();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println("training: " + (long) (trainData.getCount() * (double) maxIter / seconds) + " ratings/s");
+			
+			RatingPredictor predictor = recommender;
+			if(reordering != null)
+				predictor = new ReorderedPredictor(recommender, reordering);
 			
 			RmseEvaluator evaluator = new RmseEvaluator();
-			System.out.println(evaluator.evaluate(recommender, testData));
+			System.out.println(evaluator.evaluate(predictor, testData));
 		}
 	}
 }
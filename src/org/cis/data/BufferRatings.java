@@ -0,0 +1,124 @@
+package org.cis.data;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * This class implementing a read-only Ratings whose columns and indices are
+ * backed by nio buffers, such as the sections of a memory mapped file, so the
+ * data is used in place without copying it into the heap
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class BufferRatings extends Ratings {
+
+	/** the users column */
+	IntBuffer userBuffer;
+	/** the items column */
+	IntBuffer itemBuffer;
+	/** the rating values column */
+	ByteBuffer valueBuffer;
+
+	/**
+	 * Construct the ratings over prebuilt columns and indices
+	 *
+	 * @param userBuffer the users column
+	 * @param itemBuffer the items column
+	 * @param valueBuffer the rating values column
+	 * @param maxUserId the max user ID
+	 * @param maxItemId the max item ID
+	 * @param minRating the min rating
+	 * @param maxRating the max rating
+	 * @param userIndex the index by user
+	 * @param itemIndex the index by item
+	 */
+	public BufferRatings(IntBuffer userBuffer, IntBuffer itemBuffer, ByteBuffer valueBuffer,
+			int maxUserId, int maxItemId, int minRating, int maxRating,
+			RatingIndex userIndex, RatingIndex itemIndex) {
+		super(1);
+		this.userBuffer  = userBuffer;
+		this.itemBuffer  = itemBuffer;
+		this.valueBuffer = valueBuffer;
+		this.count = userBuffer.limit();
+
+		this.maxUserId = maxUserId;
+		this.maxItemId = maxItemId;
+		this.minRating = minRating;
+		this.maxRating = maxRating;
+		for(int index = 0; index != count; ++index)
+			this.ratingSum += valueBuffer.get(index);
+
+		this.userIndex = userIndex;
+		this.itemIndex = itemIndex;
+	}
+
+	/**
+	 * The buffers are read-only
+	 */
+	public void addRating(int user_id, int item_id, int rating) {
+		throw new UnsupportedOperationException("buffer backed ratings are read-only");
+	}
+
+	/**
+	 * The buffers are read-only
+	 */
+	public void append(Ratings other) {
+		throw new UnsupportedOperationException("buffer backed ratings are read-only");
+	}
+
+	/**
+	 * The index by user is prebuilt, it is only rebuilt (empty) after clear()
+	 */
+	public void BuildUserIndices() {
+		if(userIndex == null)
+			userIndex = RatingIndex.build(new int[0], 0, maxUserId);
+	}
+
+	/**
+	 * The index by item is prebuilt, it is only rebuilt (empty) after clear()
+	 */
+	public void BuildItemIndices() {
+		if(itemIndex == null)
+			itemIndex = RatingIndex.build(new int[0], 0, maxItemId);
+	}
+
+	/**
+	 * The buffers are already of the exact size
+	 */
+	public void trimToSize() {
+	}
+
+	/**
+	 * Get the user_id given the index
+	 */
+	public int getUser(int index) {
+		return userBuffer.get(index);
+	}
+
+	/**
+	 * Get the item_id given the index
+	 */
+	public int getItem(int index) {
+		return itemBuffer.get(index);
+	}
+
+	/**
+	 * Get the rating given the index
+	 */
+	public int getRating(int index) {
+		return valueBuffer.get(index);
+	}
+
+	/**
+	 * Release the buffers, the mapping is unmapped once they are collected
+	 */
+	public void clear() {
+		userBuffer  = IntBuffer.allocate(0);
+		itemBuffer  = IntBuffer.allocate(0);
+		valueBuffer = ByteBuffer.allocate(0);
+		count = 0;
+		ratingSum = 0;
+		invalidateIndices();
+	}
+}
@@ -0,0 +1,283 @@
+package org.cis.data;
+
+import java.util.Arrays;
+
+/**
+ * This class implementing a compressed, read-only copy of the ratings grouped
+ * by user (or by item). The keys of a row (the item IDs of a user, or the user
+ * IDs of an item) are sorted and delta encoded, and each delta is packed with
+ * the rating into one varint: (delta << 3) | rating. A typical rating then
+ * takes 1 or 2 bytes instead of the 4 bytes of the item * 10 + rating form.
+ *
+ * The rows are meant to be decoded sequentially, either into scratch arrays
+ * with decode() or one entry at a time with a Cursor
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class CompressedPostings {
+
+	/** the number of bits of the packed rating */
+	static final int RATING_BITS = 3;
+	/** the mask of the packed rating */
+	static final int RATING_MASK = (1 << RATING_BITS) - 1;
+
+	/** the encoded rows */
+	final byte[] data;
+	/** the start byte of each row in data, with one extra sentinel */
+	final int[] offsets;
+	/** the number of entries of each row */
+	final int[] degrees;
+	/** the number of rows */
+	final int rows;
+	/** the number of entries */
+	final int size;
+	/** the max number of entries of a row */
+	final int maxDegree;
+
+	/**
+	 * Construct the postings from encoded rows
+	 *
+	 * @param data the encoded rows
+	 * @param offsets the start byte of each row, length is rows + 1
+	 * @param degrees the number of entries of each row
+	 */
+	CompressedPostings(byte[] data, int[] offsets, int[] degrees) {
+		this.data    = data;
+		this.offsets = offsets;
+		this.degrees = degrees;
+		this.rows    = degrees.length;
+
+		int size = 0, maxDegree = 0;
+		for(int r = 0; r != rows; ++r){
+			size += degrees[r];
+			maxDegree = Math.max(maxDegree, degrees[r]);
+		}
+		this.size      = size;
+		this.maxDegree = maxDegree;
+	}
+
+	/**
+	 * Compress the ratings grouped by user or by item
+	 *
+	 * @param ratings the ratings, every rating must be in 0 ... 7
+	 * @param byUser true to group by user, false to group by item
+	 * @return the compressed postings
+	 */
+	public static CompressedPostings build(Ratings ratings, boolean byUser) {
+		RatingIndex index = byUser ? ratings.getUserIndex() : ratings.getItemIndex();
+		int rows = index.rows();
+
+		int[] offsets = new int[rows + 1];
+		int[] degrees = new int[rows];
+		byte[] data = new byte[Math.max(index.size() * 2, 16)];
+		int pos = 0;
+
+		long[] row = new long[16];
+		for(int r = 0; r != rows; ++r){
+			int degree = index.degree(r);
+			if(degree > row.length)
+				row = new long[Math.max(degree, row.length + (row.length >> 1))];
+
+			// sort the row by key, the rating stays in the low bits
+			int start = index.start(r);
+			for(int i = 0; i != degree; ++i){
+				int k = index.posting(start + i);
+				int key = byUser ? ratings.getItem(k) : ratings.getUser(k);
+				int rating = ratings.getRating(k);
+				if(key < 0)
+					throw new IllegalArgumentException("negative ID can not be compressed: " + key);
+				if(rating < 0 || rating > RATING_MASK)
+					throw new IllegalArgumentException("rating out of the packed range 0 ... " + RATING_MASK + ": " + rating);
+				row[i] = ((long) key << RATING_BITS) | rating;
+			}
+			Arrays.sort(row, 0, degree);
+
+			// each entry takes at most 5 bytes
+			if(data.length - pos < degree * 5){
+				long needed = (long) pos + degree * 5L;
+				if(needed > Integer.MAX_VALUE - 8)
+					throw new IllegalStateException("too many ratings to compress: " + index.size());
+				data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8,
+						Math.max(needed, (long) data.length + (data.length >> 1))));
+			}
+
+			long previous = 0;
+			for(int i = 0; i != degree; ++i){
+				long key = row[i] >>> RATING_BITS;
+				long value = ((key - previous) << RATING_BITS) | (row[i] & RATING_MASK);
+				previous = key;
+				while((value & ~0x7FL) != 0){
+					data[pos++] = (byte) ((value & 0x7F) | 0x80);
+					value >>>= 7;
+				}
+				data[pos++] = (byte) value;
+			}
+			degrees[r] = degree;
+			offsets[r + 1] = pos;
+		}
+
+		return new CompressedPostings(Arrays.copyOf(data, pos), offsets, degrees);
+	}
+
+	/**
+	 * Get the number of rows
+	 *
+	 * @return the number of rows
+	 */
+	public int rows() {
+		return rows;
+	}
+
+	/**
+	 * Get the number of entries
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the number of entries in the given row
+	 *
+	 * @param r the row number
+	 * @return the number of entries, 0 if the row is out of range
+	 */
+	public int degree(int r) {
+		if(r < 0 || r >= rows)
+			return 0;
+		return degrees[r];
+	}
+
+	/**
+	 * Get the max number of entries of a row, the size of the decode() buffers
+	 *
+	 * @return the max number of entries of a row
+	 */
+	public int maxDegree() {
+		return maxDegree;
+	}
+
+	/**
+	 * Get the number of bytes of the encoded rows
+	 *
+	 * @return the number of encoded bytes
+	 */
+	public int sizeInBytes() {
+		return data.length;
+	}
+
+	/**
+	 * Decode a row into arrays, the keys come out in ascending order
+	 *
+	 * @param r the row number
+	 * @param keys the destination of the keys, at least degree(r) long
+	 * @param ratings the destination of the ratings, at least degree(r) long
+	 * @return the number of decoded entries
+	 */
+	public int decode(int r, int[] keys, int[] ratings) {
+		int degree = degree(r);
+		if(degree == 0)
+			return 0;
+
+		byte[] data = this.data;
+		int pos = offsets[r];
+		int key = 0;
+		for(int i = 0; i != degree; ++i){
+			long value = data[pos++];
+			if(value < 0){
+				value &= 0x7F;
+				int shift = 7;
+				byte b;
+				do {
+					b = data[pos++];
+					value |= (long) (b & 0x7F) << shift;
+					shift += 7;
+				} while(b < 0);
+			}
+			key += (int) (value >>> RATING_BITS);
+			keys[i]    = key;
+			ratings[i] = (int) value & RATING_MASK;
+		}
+		return degree;
+	}
+
+	/**
+	 * Get a new cursor, a cursor is not thread safe but can be reset to any row
+	 *
+	 * @return the cursor
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * This class walks the entries of a row one at a time without allocating
+	 */
+	public class Cursor {
+
+		/** the position of the next byte */
+		int pos;
+		/** the number of entries left in the row */
+		int left;
+		/** the current key */
+		int key;
+		/** the current rating */
+		int rating;
+
+		/**
+		 * Move the cursor before the first entry of a row
+		 *
+		 * @param r the row number
+		 * @return this cursor
+		 */
+		public Cursor reset(int r) {
+			left   = degree(r);
+			pos    = (left != 0) ? offsets[r] : 0;
+			key    = 0;
+			rating = 0;
+			return this;
+		}
+
+		/**
+		 * Move to the next entry of the row
+		 *
+		 * @return false if the row has no more entries
+		 */
+		public boolean next() {
+			if(left == 0)
+				return false;
+			--left;
+
+			long value = data[pos++];
+			if(value < 0){
+				value &= 0x7F;
+				int shift = 7;
+				byte b;
+				do {
+					b = data[pos++];
+					value |= (long) (b & 0x7F) << shift;
+					shift += 7;
+				} while(b < 0);
+			}
+			key   += (int) (value >>> RATING_BITS);
+			rating = (int) value & RATING_MASK;
+			return true;
+		}
+
+		/**
+		 * @return the key of the current entry
+		 */
+		public int key() {
+			return key;
+		}
+
+		/**
+		 * @return the rating of the current entry
+		 */
+		public int rating() {
+			return rating;
+		}
+	}
+}
@@ -23,6 +23,11 @@ public interface DataSet {
 	 */
 	void BuildRandomIndex();
 	
+	/**
+	 * Build the lookup index of (user, item) pairs used by GetIndex
+	 */
+	void BuildPairIndex();
+	
 	/**
 	 * Get index for a given user and item
 	 * 
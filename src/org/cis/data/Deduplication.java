@@ -0,0 +1,173 @@
+package org.cis.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class merging the ratings of the same (user, item) pair into one rating.
+ * The ratings of each user are taken from the user index and sorted by the long
+ * key (item << 32 | index), so the duplicates of a pair are adjacent and in
+ * their order of arrival; the user rows are split into ranges which are sorted
+ * on a pool of threads.
+ *
+ * The merged rating takes the place of the first rating of its pair and its
+ * value is chosen by the policy: LAST keeps the last rating, MEAN the rounded
+ * mean and MAX the highest one
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class Deduplication {
+
+	/** keep the last rating of a pair */
+	public static final int LAST = 0;
+	/** keep the rounded mean of the ratings of a pair */
+	public static final int MEAN = 1;
+	/** keep the highest rating of a pair */
+	public static final int MAX = 2;
+
+	/** the number of ratings below which apply() runs on the calling thread */
+	static final int PARALLEL_THRESHOLD = 1 << 18;
+
+	/** the merge policy */
+	final int policy;
+	/** the number of ratings removed by the last apply() */
+	long merged;
+
+	/**
+	 * Construct a deduplication
+	 *
+	 * @param policy the merge policy, LAST, MEAN or MAX
+	 */
+	public Deduplication(int policy) {
+		if(policy != LAST && policy != MEAN && policy != MAX)
+			throw new IllegalArgumentException("unknown duplicate policy: " + policy);
+		this.policy = policy;
+	}
+
+	/**
+	 * Merge the duplicate pairs of the ratings
+	 *
+	 * @param ratings the ratings
+	 * @return the ratings itself if it has no duplicate, or a new Ratings with
+	 *         one rating per pair in the order of the first ratings of the pairs
+	 */
+	public Ratings apply(final Ratings ratings) {
+		final int n = ratings.getCount();
+		final RatingIndex index = ratings.getUserIndex();
+		// the merged value of each kept rating
+		final byte[] values = new byte[n];
+		final boolean[] removed = new boolean[n];
+
+		int threadNumber = Runtime.getRuntime().availableProcessors();
+		merged = 0;
+		if(n < PARALLEL_THRESHOLD || threadNumber == 1){
+			merged = merge(ratings, index, 0, index.rows(), values, removed);
+		} else {
+			ExecutorService pool = Executors.newFixedThreadPool(threadNumber);
+			try {
+				ArrayList<Future<Long>> tasks = new ArrayList<Future<Long>>();
+				int parts = threadNumber * 4;
+				for(int k = 0; k != parts; ++k){
+					final int start = (int) ((long) index.rows() * k / parts);
+					final int end   = (int) ((long) index.rows() * (k + 1) / parts);
+					tasks.add(pool.submit(new Callable<Long>() {
+						public Long call() {
+							return merge(ratings, index, start, end, values, removed);
+						}
+					}));
+				}
+				for(Future<Long> task : tasks)
+					merged += task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while merging the duplicates", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("failed to merge the duplicates", e.getCause());
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		if(merged == 0)
+			return ratings;
+
+		Ratings unique = new Ratings((int) (n - merged));
+		unique.setUserMapping(ratings.getUserMapping());
+		unique.setItemMapping(ratings.getItemMapping());
+		for(int k = 0; k != n; ++k){
+			if(!removed[k])
+				unique.addRating(ratings.getUser(k), ratings.getItem(k), values[k]);
+		}
+		return unique;
+	}
+
+	/**
+	 * Merge the duplicates of the users start ... end - 1
+	 *
+	 * @param ratings the ratings
+	 * @param index the index of the ratings by user
+	 * @param start the first user
+	 * @param end the user after the last one
+	 * @param values the merged value of each rating, filled for the ratings of the users
+	 * @param removed whether each rating is removed, filled for the ratings of the users
+	 * @return the number of removed ratings
+	 */
+	long merge(Ratings ratings, RatingIndex index, int start, int end, byte[] values, boolean[] removed) {
+		long count = 0;
+		long[] keys = new long[16];
+		for(int u = start; u != end; ++u){
+			int degree = index.degree(u);
+			if(degree == 0)
+				continue;
+			if(degree > keys.length)
+				keys = new long[Math.max(degree, keys.length * 2)];
+			int first = index.start(u);
+			for(int k = 0; k != degree; ++k){
+				int posting = index.posting(first + k);
+				keys[k] = ((long) ratings.getItem(posting) << 32) | posting;
+			}
+			Arrays.sort(keys, 0, degree);
+
+			for(int run = 0; run != degree; ){
+				int item = (int) (keys[run] >>> 32);
+				int next = run + 1;
+				while(next != degree && (int) (keys[next] >>> 32) == item)
+					next++;
+
+				int head = (int) keys[run];
+				if(next == run + 1){
+					values[head] = (byte) ratings.getRating(head);
+				} else {
+					int value = 0;
+					for(int k = run; k != next; ++k){
+						int rating = ratings.getRating((int) keys[k]);
+						if(policy == LAST || (policy == MAX && (k == run || rating > value)))
+							value = rating;
+						else if(policy == MEAN)
+							value += rating;
+						if(k != run)
+							removed[(int) keys[k]] = true;
+					}
+					if(policy == MEAN)
+						value = (int) Math.round((double) value / (next - run));
+					values[head] = (byte) value;
+					count += next - run - 1;
+				}
+				run = next;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of ratings removed by the last apply()
+	 */
+	public long getMergedNumber() {
+		return merged;
+	}
+}
@@ -0,0 +1,151 @@
+package org.cis.data;
+
+/**
+ * This class generating the visiting order of the ratings for each epoch of a
+ * stochastic gradient descent trainer. The order is a reusable int[] shuffled
+ * in place by a seedable splitmix64 generator, so an epoch allocates nothing.
+ *
+ * In block mode the indices are cut into runs of consecutive indices and only
+ * the order of the runs is shuffled, the ratings of a run are read sequentially
+ * which keeps the rating columns in cache
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class EpochOrder {
+
+	/** the golden ratio increment of splitmix64 */
+	static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/** the visiting order, reused by every epoch */
+	final int[] order;
+	/** the number of consecutive indices kept together, 1 for a full shuffle */
+	int blockSize;
+	/** the order of the blocks, used in block mode only */
+	int[] blocks;
+	/** the state of the generator */
+	long state;
+
+	/**
+	 * Construct the order of size indices with a time based seed
+	 *
+	 * @param size the number of ratings
+	 */
+	public EpochOrder(int size) {
+		this(size, System.nanoTime());
+	}
+
+	/**
+	 * Construct the order of size indices, the same seed gives the same
+	 * sequence of epochs
+	 *
+	 * @param size the number of ratings
+	 * @param seed the seed of the generator
+	 */
+	public EpochOrder(int size, long seed) {
+		this.order     = new int[size];
+		this.blockSize = 1;
+		this.state     = seed;
+		for(int index = 0; index != size; ++index)
+			order[index] = index;
+	}
+
+	/**
+	 * Set the block mode, the blocks are allocated here once
+	 *
+	 * @param blockSize the number of consecutive indices kept together, 1 for a full shuffle
+	 * @return this order
+	 */
+	public EpochOrder setBlockSize(int blockSize) {
+		if(blockSize < 1)
+			throw new IllegalArgumentException("block size must be positive: " + blockSize);
+		this.blockSize = blockSize;
+		if(blockSize == 1){
+			blocks = null;
+			for(int index = 0; index != order.length; ++index)
+				order[index] = index;
+		} else {
+			blocks = new int[(int) (((long) order.length + blockSize - 1) / blockSize)];
+			for(int b = 0; b != blocks.length; ++b)
+				blocks[b] = b;
+		}
+		return this;
+	}
+
+	/**
+	 * @return the number of consecutive indices kept together
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Get the number of ratings of an epoch
+	 *
+	 * @return the number of ratings
+	 */
+	public int size() {
+		return order.length;
+	}
+
+	/**
+	 * Shuffle the order for the next epoch. The returned array is owned by
+	 * this object and overwritten by the next call
+	 *
+	 * @return the rating indices in visiting order
+	 */
+	public int[] next() {
+		if(blocks == null){
+			shuffle(order, order.length);
+			return order;
+		}
+
+		shuffle(blocks, blocks.length);
+		int pos = 0;
+		for(int b = 0; b != blocks.length; ++b){
+			int start = blocks[b] * blockSize;
+			int end = Math.min(start + blockSize, order.length);
+			for(int index = start; index != end; ++index)
+				order[pos++] = index;
+		}
+		return order;
+	}
+
+	/**
+	 * Fisher-Yates shuffle of the first n entries of an array
+	 *
+	 * @param a the array
+	 * @param n the number of entries to shuffle
+	 */
+	void shuffle(int[] a, int n) {
+		for(int i = n - 1; i > 0; --i){
+			int j = nextInt(i + 1);
+			int t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+
+	/**
+	 * Get the next random long of the splitmix64 generator
+	 *
+	 * @return a random long
+	 */
+	long nextLong() {
+		long z = (state += GOLDEN_GAMMA);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Get a random int in 0 ... bound - 1 with a multiply shift, the bias
+	 * is below 2^-32 and of no concern for shuffling
+	 *
+	 * @param bound the upper bound, positive
+	 * @return a random int
+	 */
+	int nextInt(int bound) {
+		return (int) (((nextLong() >>> 32) * bound) >>> 32);
+	}
+}
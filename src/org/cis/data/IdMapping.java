@@ -0,0 +1,139 @@
+package org.cis.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.cis.util.LongIntHashMap;
+
+/**
+ * This class maps sparse external IDs to contiguous internal IDs 1, 2, ..., size()
+ * and back. The internal IDs start from 1 as the predictors leave the row 0 unused,
+ * so the model size follows the number of distinct IDs instead of the max ID
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class IdMapping {
+
+	/** external ID to internal ID */
+	LongIntHashMap toInternal;
+	/** internal ID to external ID, the slot 0 is unused */
+	int[] toExternal;
+	/** the number of mapped IDs */
+	int size;
+
+	/**
+	 * Construct an empty mapping
+	 */
+	public IdMapping(){
+		this(1024);
+	}
+
+	/**
+	 * Construct an empty mapping
+	 *
+	 * @param expectedSize the expected number of distinct IDs
+	 */
+	public IdMapping(int expectedSize){
+		this.toInternal = new LongIntHashMap(expectedSize, -1);
+		this.toExternal = new int[Math.max(expectedSize, 1) + 1];
+		this.size = 0;
+	}
+
+	/**
+	 * Get the internal ID of an external ID, a new internal ID is assigned
+	 * if the external ID is not mapped yet
+	 *
+	 * @param external_id the external ID
+	 * @return the internal ID
+	 */
+	public int toInternal(int external_id){
+		int internal_id = toInternal.get(external_id);
+		if(internal_id != -1)
+			return internal_id;
+
+		internal_id = ++size;
+		if(internal_id == toExternal.length)
+			toExternal = Arrays.copyOf(toExternal, toExternal.length + (toExternal.length >> 1) + 1);
+		toExternal[internal_id] = external_id;
+		toInternal.put(external_id, internal_id);
+		return internal_id;
+	}
+
+	/**
+	 * Get the internal ID of an external ID without assigning a new one
+	 *
+	 * @param external_id the external ID
+	 * @return the internal ID, or -1 if the external ID is not mapped
+	 */
+	public int getInternal(int external_id){
+		return toInternal.get(external_id);
+	}
+
+	/**
+	 * Get the external ID of an internal ID
+	 *
+	 * @param internal_id the internal ID
+	 * @return the external ID
+	 */
+	public int toExternal(int internal_id){
+		if(internal_id < 1 || internal_id > size)
+			throw new IllegalArgumentException("unknown internal ID: " + internal_id);
+		return toExternal[internal_id];
+	}
+
+	/**
+	 * Get the number of mapped IDs, which is also the max internal ID
+	 *
+	 * @return the number of mapped IDs
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Save the mapping to a binary file, the external IDs are written in internal ID order
+	 *
+	 * @param filePath the path of the file
+	 */
+	public void save(String filePath){
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+			out.writeInt(size);
+			for(int internal_id = 1; internal_id <= size; ++internal_id)
+				out.writeInt(toExternal[internal_id]);
+			out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Load a mapping saved by save()
+	 *
+	 * @param filePath the path of the file
+	 * @return the mapping
+	 */
+	public static IdMapping load(String filePath){
+		IdMapping mapping = null;
+		try {
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(filePath), 1 << 16));
+			int size = in.readInt();
+			mapping = new IdMapping(size);
+			for(int internal_id = 1; internal_id <= size; ++internal_id)
+				mapping.toInternal(in.readInt());
+			in.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return mapping;
+	}
+}
@@ -0,0 +1,183 @@
+package org.cis.data;
+
+import java.util.ArrayList;
+
+import org.cis.util.LongIntHashMap;
+
+/**
+ * This class implementing a read-only snapshot of a Ratings which is safe to
+ * share between threads: the user and item indices are built once when the
+ * snapshot is taken, every mutator throws UnsupportedOperationException, and
+ * the random index is generated per call instead of being cached.
+ * 
+ * Many predictors can be trained on one snapshot, one after another or
+ * concurrently, without reloading the data
+ * 
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class ImmutableRatings extends Ratings {
+	
+	/** the pair index, published once it is built */
+	private volatile LongIntHashMap sharedPairIndex;
+	
+	/**
+	 * Construct a snapshot of the given ratings. The columns of a plain Ratings
+	 * are trimmed and shared, they are never written again as the source grows
+	 * into new arrays on its next append, other sources are copied
+	 * 
+	 * @param source the ratings to take a snapshot of
+	 */
+	ImmutableRatings(Ratings source) {
+		super(1);
+		int n = source.getCount();
+		if(source.getClass() == Ratings.class){
+			source.trimToSize();
+			this.users  = source.users;
+			this.items  = source.items;
+			this.values = source.values;
+		} else {
+			this.users  = new int[n];
+			this.items  = new int[n];
+			this.values = new byte[n];
+			for(int index = 0; index != n; ++index){
+				users[index]  = source.getUser(index);
+				items[index]  = source.getItem(index);
+				values[index] = (byte) source.getRating(index);
+			}
+		}
+		this.count = n;
+		
+		this.maxUserId = source.maxUserId;
+		this.maxItemId = source.maxItemId;
+		this.minRating = source.minRating;
+		this.maxRating = source.maxRating;
+		this.ratingSum = source.ratingSum;
+		
+		this.userMapping = source.userMapping;
+		this.itemMapping = source.itemMapping;
+		
+		this.userIndex = RatingIndex.build(users, count, maxUserId);
+		this.itemIndex = RatingIndex.build(items, count, maxItemId);
+	}
+	
+	/**
+	 * The snapshot is read-only
+	 */
+	public void addRating(int user_id, int item_id, int rating) {
+		throw new UnsupportedOperationException("the ratings snapshot is read-only");
+	}
+	
+	/**
+	 * The snapshot is read-only
+	 */
+	public void append(Ratings other) {
+		throw new UnsupportedOperationException("the ratings snapshot is read-only");
+	}
+	
+	/**
+	 * The snapshot is read-only
+	 */
+	public void clear() {
+		throw new UnsupportedOperationException("the ratings snapshot is read-only");
+	}
+	
+	/**
+	 * The snapshot is read-only
+	 */
+	public void setUserMapping(IdMapping userMapping) {
+		throw new UnsupportedOperationException("the ratings snapshot is read-only");
+	}
+	
+	/**
+	 * The snapshot is read-only
+	 */
+	public void setItemMapping(IdMapping itemMapping) {
+		throw new UnsupportedOperationException("the ratings snapshot is read-only");
+	}
+	
+	/**
+	 * The columns are already of the exact size
+	 */
+	public void trimToSize() {
+	}
+	
+	/**
+	 * The user indices are built with the snapshot
+	 */
+	public void BuildUserIndices() {
+	}
+	
+	/**
+	 * The item indices are built with the snapshot
+	 */
+	public void BuildItemIndices() {
+	}
+	
+	/**
+	 * The random index is generated by each getRandomIndex() call
+	 */
+	public void BuildRandomIndex() {
+	}
+	
+	/**
+	 * Build the hash index of (user, item) pairs
+	 */
+	public synchronized void BuildPairIndex() {
+		if(sharedPairIndex == null){
+			super.BuildPairIndex();
+			sharedPairIndex = pairIndex;
+		}
+	}
+	
+	/**
+	 * Get index for a given user and item
+	 */
+	public int GetIndex(int user_id, int item_id) {
+		LongIntHashMap map = sharedPairIndex;
+		if(map == null){
+			BuildPairIndex();
+			map = sharedPairIndex;
+		}
+		return map.get(pairKey(user_id, item_id));
+	}
+	
+	/**
+	 * Get the index sorted by user
+	 */
+	public synchronized ArrayList<ArrayList<Integer>> getIndicesByUser() {
+		return super.getIndicesByUser();
+	}
+	
+	/**
+	 * Get the index sorted by item
+	 */
+	public synchronized ArrayList<ArrayList<Integer>> getIndicesByItem() {
+		return super.getIndicesByItem();
+	}
+	
+	/**
+	 * Get the statistics, computed once
+	 */
+	public synchronized RatingStatistics getStatistics() {
+		return super.getStatistics();
+	}
+	
+	/**
+	 * Get a newly generated random index of ratings, owned by the caller
+	 */
+	public ArrayList<Integer> getRandomIndex() {
+		ArrayList<Integer> list = new ArrayList<Integer>(count);
+		for(int index = 0; index != count; ++index)
+			list.add(index);
+		java.util.Collections.shuffle(list);
+		return list;
+	}
+	
+	/**
+	 * The snapshot is already immutable
+	 */
+	public Ratings snapshot() {
+		return this;
+	}
+}
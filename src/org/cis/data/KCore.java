@@ -0,0 +1,201 @@
+package org.cis.data;
+
+/**
+ * This class computing the (kUser, kItem)-core of a Ratings: the largest subset
+ * of the ratings in which every user has at least kUser ratings and every item
+ * at least kItem ratings. Users and items below their threshold are peeled off
+ * one by one from the CSR indices, which lowers the degrees of their neighbors
+ * until no degree is below its threshold.
+ *
+ * The kept users and items get the IDs 1 ... keptUserNumber() and
+ * 1 ... keptItemNumber() in their old order, ID 0 is never kept, so a model
+ * trained on getRatings() only allocates rows for them. The pruned IDs follow in the reordering, they
+ * are answered by a fallback predictor, see PrunedPredictor
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class KCore {
+
+	/** the relabeling of the IDs, the kept IDs first */
+	final Reordering reordering;
+	/** the ratings of the core with the new IDs */
+	final Ratings core;
+	/** the number of kept users */
+	final int keptUsers;
+	/** the number of kept items */
+	final int keptItems;
+
+	/**
+	 * Construct the result of the pruning
+	 *
+	 * @param reordering the relabeling of the IDs
+	 * @param core the ratings of the core with the new IDs
+	 * @param keptUsers the number of kept users
+	 * @param keptItems the number of kept items
+	 */
+	KCore(Reordering reordering, Ratings core, int keptUsers, int keptItems) {
+		this.reordering = reordering;
+		this.core = core;
+		this.keptUsers = keptUsers;
+		this.keptItems = keptItems;
+	}
+
+	/**
+	 * Compute the (kUser, kItem)-core of the ratings
+	 *
+	 * @param ratings the ratings
+	 * @param kUser the min number of ratings of a kept user, at least 1
+	 * @param kItem the min number of ratings of a kept item, at least 1
+	 * @return the core and the relabeling of its IDs
+	 */
+	public static KCore compute(Ratings ratings, int kUser, int kItem) {
+		if(kUser < 1 || kItem < 1)
+			throw new IllegalArgumentException("the core thresholds must be positive: " + kUser + ", " + kItem);
+		RatingIndex userIndex = ratings.getUserIndex();
+		RatingIndex itemIndex = ratings.getItemIndex();
+		int maxUser = ratings.totalUserNumber();
+		int maxItem = ratings.totalItemNumber();
+
+		int[] userDegrees = new int[maxUser + 1];
+		int[] itemDegrees = new int[maxItem + 1];
+		for(int u = 0; u < userIndex.rows() && u <= maxUser; ++u)
+			userDegrees[u] = userIndex.degree(u);
+		for(int i = 0; i < itemIndex.rows() && i <= maxItem; ++i)
+			itemDegrees[i] = itemIndex.degree(i);
+
+		// a removed user or item is marked once and queued, the queue holds
+		// user u as u and item i as -i - 1. ID 0 is never kept
+		boolean[] userRemoved = new boolean[maxUser + 1];
+		boolean[] itemRemoved = new boolean[maxItem + 1];
+		int[] queue = new int[maxUser + maxItem + 2];
+		int head = 0, tail = 0;
+		for(int u = 0; u <= maxUser; ++u){
+			if(u == 0 || userDegrees[u] < kUser){
+				userRemoved[u] = true;
+				queue[tail++] = u;
+			}
+		}
+		for(int i = 0; i <= maxItem; ++i){
+			if(i == 0 || itemDegrees[i] < kItem){
+				itemRemoved[i] = true;
+				queue[tail++] = -i - 1;
+			}
+		}
+
+		while(head != tail){
+			int node = queue[head++];
+			if(node >= 0){
+				if(node >= userIndex.rows())
+					continue;
+				for(int pos = userIndex.start(node); pos != userIndex.end(node); ++pos){
+					int i = ratings.getItem(userIndex.posting(pos));
+					if(!itemRemoved[i] && --itemDegrees[i] < kItem){
+						itemRemoved[i] = true;
+						queue[tail++] = -i - 1;
+					}
+				}
+			} else {
+				int i = -node - 1;
+				if(i >= itemIndex.rows())
+					continue;
+				for(int pos = itemIndex.start(i); pos != itemIndex.end(i); ++pos){
+					int u = ratings.getUser(itemIndex.posting(pos));
+					if(!userRemoved[u] && --userDegrees[u] < kUser){
+						userRemoved[u] = true;
+						queue[tail++] = u;
+					}
+				}
+			}
+		}
+
+		// the kept IDs are numbered first, ID 0 stays 0
+		int[] userToNew = new int[maxUser + 1];
+		int[] itemToNew = new int[maxItem + 1];
+		int keptUsers = relabel(userRemoved, userToNew);
+		int keptItems = relabel(itemRemoved, itemToNew);
+		Reordering reordering = new Reordering(userToNew, itemToNew);
+
+		int kept = 0;
+		for(int u = 1; u <= maxUser; ++u){
+			if(!userRemoved[u])
+				kept += userDegrees[u];
+		}
+		int n = ratings.getCount();
+		Ratings core = new Ratings(Math.max(kept, 1));
+		for(int index = 0; index != n; ++index){
+			int u = ratings.getUser(index);
+			int i = ratings.getItem(index);
+			if(!userRemoved[u] && !itemRemoved[i])
+				core.addRating(userToNew[u], itemToNew[i], ratings.getRating(index));
+		}
+		return new KCore(reordering, core, keptUsers, keptItems);
+	}
+
+	/**
+	 * Number the kept IDs 1 ... kept, then the removed IDs
+	 *
+	 * @param removed whether each ID is removed
+	 * @param toNew the new ID of each old ID, filled
+	 * @return the number of kept IDs, not counting ID 0
+	 */
+	private static int relabel(boolean[] removed, int[] toNew) {
+		int next = 1;
+		for(int k = 1; k != removed.length; ++k){
+			if(!removed[k])
+				toNew[k] = next++;
+		}
+		int kept = next - 1;
+		for(int k = 1; k != removed.length; ++k){
+			if(removed[k])
+				toNew[k] = next++;
+		}
+		return kept;
+	}
+
+	/**
+	 * @return the ratings of the core with the new IDs
+	 */
+	public Ratings getRatings() {
+		return core;
+	}
+
+	/**
+	 * @return the relabeling of the IDs
+	 */
+	public Reordering getReordering() {
+		return reordering;
+	}
+
+	/**
+	 * @return the number of kept users
+	 */
+	public int keptUserNumber() {
+		return keptUsers;
+	}
+
+	/**
+	 * @return the number of kept items
+	 */
+	public int keptItemNumber() {
+		return keptItems;
+	}
+
+	/**
+	 * @param user_id the old user ID
+	 * @return true if the user is in the core
+	 */
+	public boolean hasUser(int user_id) {
+		int u = reordering.toNewUser(user_id);
+		return u >= 1 && u <= keptUsers;
+	}
+
+	/**
+	 * @param item_id the old item ID
+	 * @return true if the item is in the core
+	 */
+	public boolean hasItem(int item_id) {
+		int i = reordering.toNewItem(item_id);
+		return i >= 1 && i <= keptItems;
+	}
+}
@@ -0,0 +1,329 @@
+package org.cis.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * This class implementing a growable Ratings whose columns live outside of the
+ * Java heap, in direct buffers of CHUNK_SIZE ratings each, so the garbage
+ * collector never scans or copies the rating data. The ratings are addressed
+ * with long indices and the data set may hold more than 2^31 ratings.
+ *
+ * The indices by user and by item are built into direct buffer chunks as
+ * well, they are rebuilt instead of merged after new ratings are added.
+ *
+ * getCount(), the int accessors, the indices and so every predictor, which
+ * all iterate over int indices, need the count to fit into an int: above
+ * Integer.MAX_VALUE ratings getCount() throws and only getLongCount() and
+ * the long accessors work, such as to stream the ratings to an external or
+ * sharded trainer
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class OffHeapRatings extends Ratings {
+
+	/** the log2 of the number of ratings of a chunk */
+	static final int CHUNK_SHIFT = 20;
+	/** the number of ratings of a chunk */
+	static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	/** the mask of the index inside a chunk */
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/** the users column, one buffer per chunk */
+	IntBuffer[] userChunks;
+	/** the items column, one buffer per chunk */
+	IntBuffer[] itemChunks;
+	/** the rating values column, one buffer per chunk */
+	ByteBuffer[] valueChunks;
+	/** the number of allocated chunks */
+	int chunkNumber;
+	/** the number of ratings */
+	long size;
+
+	/**
+	 * Construct an empty off-heap Ratings
+	 */
+	public OffHeapRatings() {
+		super(1);
+		userChunks  = new IntBuffer[16];
+		itemChunks  = new IntBuffer[16];
+		valueChunks = new ByteBuffer[16];
+	}
+
+	/**
+	 * Add a rating event to the data set
+	 */
+	public void addRating(int user_id, int item_id, int rating) {
+		checkRating(user_id, item_id, rating);
+
+		int chunk = (int) (size >>> CHUNK_SHIFT);
+		if(chunk == chunkNumber)
+			allocateChunk();
+		int offset = (int) size & CHUNK_MASK;
+		userChunks[chunk].put(offset, user_id);
+		itemChunks[chunk].put(offset, item_id);
+		valueChunks[chunk].put(offset, (byte) rating);
+
+		size++;
+		if(size > Integer.MAX_VALUE){
+			// the int indices of the pair index do not reach so far
+			count = Integer.MAX_VALUE;
+			pairIndex = null;
+			updateStatistics(user_id, item_id, rating, -1);
+		} else {
+			count = (int) size;
+			updateStatistics(user_id, item_id, rating, count - 1);
+		}
+	}
+
+	/**
+	 * Allocate one more chunk of the three columns, in one direct buffer
+	 */
+	private void allocateChunk() {
+		if(chunkNumber == userChunks.length){
+			int length = chunkNumber * 2;
+			userChunks  = Arrays.copyOf(userChunks, length);
+			itemChunks  = Arrays.copyOf(itemChunks, length);
+			valueChunks = Arrays.copyOf(valueChunks, length);
+		}
+
+		ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE * 9);
+		userChunks[chunkNumber]  = section(chunk, 0, CHUNK_SIZE * 4).asIntBuffer();
+		itemChunks[chunkNumber]  = section(chunk, CHUNK_SIZE * 4, CHUNK_SIZE * 4).asIntBuffer();
+		valueChunks[chunkNumber] = section(chunk, CHUNK_SIZE * 8, CHUNK_SIZE);
+		chunkNumber++;
+	}
+
+	/**
+	 * Get a native order view of a section of a buffer
+	 *
+	 * @param buffer the buffer
+	 * @param offset the first byte of the section
+	 * @param length the number of bytes of the section
+	 * @return the view of the section
+	 */
+	private static ByteBuffer section(ByteBuffer buffer, int offset, int length) {
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		view.limit(offset + length);
+		return view.slice().order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Append all the ratings of another data set, in their order
+	 */
+	public void append(Ratings other) {
+		if(other instanceof OffHeapRatings){
+			OffHeapRatings source = (OffHeapRatings) other;
+			for(long index = 0; index != source.size; ++index)
+				addRating(source.getUser(index), source.getItem(index), source.getRating(index));
+		} else {
+			int n = other.getCount();
+			for(int index = 0; index != n; ++index)
+				addRating(other.getUser(index), other.getItem(index), other.getRating(index));
+		}
+	}
+
+	/**
+	 * The chunks are kept, the last one is filled by the next ratings
+	 */
+	public void trimToSize() {
+	}
+
+	/**
+	 * Build the user indices
+	 */
+	public void BuildUserIndices() {
+		userIndex = buildIndex(userChunks, maxUserId);
+	}
+
+	/**
+	 * Build the item indices
+	 */
+	public void BuildItemIndices() {
+		itemIndex = buildIndex(itemChunks, maxItemId);
+	}
+
+	/**
+	 * This class implementing a rating index whose postings are held in
+	 * direct buffer chunks of CHUNK_SIZE rating indices each
+	 */
+	static class ChunkedIndex extends RatingIndex {
+
+		/** the postings, one buffer per chunk */
+		final IntBuffer[] chunks;
+		/** the number of postings */
+		final int size;
+
+		/**
+		 * Construct the index
+		 *
+		 * @param offsets the start position of each row, length is rows + 1
+		 * @param chunks the postings, one buffer per chunk
+		 * @param size the number of postings
+		 */
+		ChunkedIndex(IntBuffer offsets, IntBuffer[] chunks, int size) {
+			super(offsets);
+			this.chunks = chunks;
+			this.size = size;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int posting(int pos) {
+			return chunks[pos >>> CHUNK_SHIFT].get(pos & CHUNK_MASK);
+		}
+
+		public int copyRow(int r, int[] dst) {
+			int degree = degree(r);
+			int start = (degree != 0) ? start(r) : 0;
+			for(int i = 0; i != degree; ++i)
+				dst[i] = posting(start + i);
+			return degree;
+		}
+	}
+
+	/**
+	 * Build an index of a key column with a counting sort, the postings are
+	 * written into direct buffer chunks
+	 *
+	 * @param keyChunks the key column
+	 * @param maxKey the max key in the column
+	 * @return the index grouped by key
+	 */
+	private RatingIndex buildIndex(IntBuffer[] keyChunks, int maxKey) {
+		int n = getCount();
+		int rows = maxKey + 1;
+		int[] offsets = new int[rows + 1];
+
+		for(int index = 0; index != n; ++index)
+			offsets[keyChunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK) + 1]++;
+		for(int r = 0; r != rows; ++r)
+			offsets[r + 1] += offsets[r];
+
+		IntBuffer[] postings = new IntBuffer[(int) (((long) n + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+		for(int chunk = 0; chunk != postings.length; ++chunk)
+			postings[chunk] = ByteBuffer.allocateDirect(CHUNK_SIZE * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		int[] next = new int[rows];
+		System.arraycopy(offsets, 0, next, 0, rows);
+		for(int index = 0; index != n; ++index){
+			int pos = next[keyChunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK)]++;
+			postings[pos >>> CHUNK_SHIFT].put(pos & CHUNK_MASK, index);
+		}
+
+		return new ChunkedIndex(IntBuffer.wrap(offsets), postings, n);
+	}
+
+	/**
+	 * Get the index by user, rebuilt after new ratings are added
+	 */
+	public RatingIndex getUserIndex() {
+		if(userIndex == null || userIndex.size() != getCount())
+			BuildUserIndices();
+		return userIndex;
+	}
+
+	/**
+	 * Get the index by item, rebuilt after new ratings are added
+	 */
+	public RatingIndex getItemIndex() {
+		if(itemIndex == null || itemIndex.size() != getCount())
+			BuildItemIndices();
+		return itemIndex;
+	}
+
+	/**
+	 * Get the number of ratings
+	 *
+	 * @throws IllegalStateException if the count does not fit into an int, use getLongCount()
+	 */
+	public int getCount() {
+		if(size > Integer.MAX_VALUE)
+			throw new IllegalStateException("too many ratings for an int count, use getLongCount(): " + size);
+		return count;
+	}
+
+	/**
+	 * Get the number of ratings
+	 *
+	 * @return the number of ratings
+	 */
+	public long getLongCount() {
+		return size;
+	}
+
+	/**
+	 * Get the average rating of all the rating values
+	 */
+	public double averageRating() {
+		return (double) ratingSum / size;
+	}
+
+	/**
+	 * Get the user_id given the index
+	 */
+	public int getUser(int index) {
+		return userChunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+	}
+
+	/**
+	 * Get the item_id given the index
+	 */
+	public int getItem(int index) {
+		return itemChunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+	}
+
+	/**
+	 * Get the rating given the index
+	 */
+	public int getRating(int index) {
+		return valueChunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+	}
+
+	/**
+	 * Get the user_id given a long index
+	 *
+	 * @param index the index of the rating
+	 * @return the user_id
+	 */
+	public int getUser(long index) {
+		return userChunks[(int) (index >>> CHUNK_SHIFT)].get((int) index & CHUNK_MASK);
+	}
+
+	/**
+	 * Get the item_id given a long index
+	 *
+	 * @param index the index of the rating
+	 * @return the item_id
+	 */
+	public int getItem(long index) {
+		return itemChunks[(int) (index >>> CHUNK_SHIFT)].get((int) index & CHUNK_MASK);
+	}
+
+	/**
+	 * Get the rating given a long index
+	 *
+	 * @param index the index of the rating
+	 * @return the rating value
+	 */
+	public int getRating(long index) {
+		return valueChunks[(int) (index >>> CHUNK_SHIFT)].get((int) index & CHUNK_MASK);
+	}
+
+	/**
+	 * Release the chunks, the direct memory is freed once they are collected
+	 */
+	public void clear() {
+		super.clear();
+		userChunks  = new IntBuffer[16];
+		itemChunks  = new IntBuffer[16];
+		valueChunks = new ByteBuffer[16];
+		chunkNumber = 0;
+		size = 0;
+	}
+}
@@ -0,0 +1,223 @@
+package org.cis.data;
+
+import java.nio.IntBuffer;
+
+/**
+ * This class implementing an immutable compressed sparse row index over the
+ * rating events: the rating indices of row r (a user or an item) are stored in
+ * postings[offsets[r]] ... postings[offsets[r+1]-1], in ascending order.
+ * The arrays are held as int buffers, so the index can either wrap heap arrays
+ * or be read directly from a memory mapped file
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class RatingIndex {
+
+	/** the start position of each row in the postings, with one extra sentinel */
+	final IntBuffer offsets;
+	/** the rating indices grouped by row */
+	final IntBuffer postings;
+	/** the number of rows */
+	final int rows;
+
+	/**
+	 * Construct the index from prebuilt offsets and postings
+	 *
+	 * @param offsets the start position of each row, length is rows + 1
+	 * @param postings the rating indices grouped by row
+	 */
+	public RatingIndex(IntBuffer offsets, IntBuffer postings) {
+		this.offsets  = offsets;
+		this.postings = postings;
+		this.rows     = offsets.limit() - 1;
+	}
+
+	/**
+	 * Construct the index over prebuilt offsets, for a subclass which holds
+	 * the postings in another form and overrides size(), posting() and copyRow()
+	 *
+	 * @param offsets the start position of each row, length is rows + 1
+	 */
+	RatingIndex(IntBuffer offsets) {
+		this.offsets  = offsets;
+		this.postings = null;
+		this.rows     = offsets.limit() - 1;
+	}
+
+	/**
+	 * Build the index of a key column with a counting sort
+	 *
+	 * @param keys the key column, such as the user or item column
+	 * @param count the number of valid entries in the column
+	 * @param maxKey the max key in the column
+	 * @return the index grouped by key
+	 */
+	static RatingIndex build(int[] keys, int count, int maxKey) {
+		int rows = maxKey + 1;
+		int[] offsets  = new int[rows + 1];
+		int[] postings = new int[count];
+
+		// count the degree of each key
+		for(int index = 0; index != count; ++index)
+			offsets[keys[index] + 1]++;
+		// prefix sum
+		for(int r = 0; r != rows; ++r)
+			offsets[r + 1] += offsets[r];
+
+		// scatter, the postings of a row keep the original order
+		int[] next = new int[rows];
+		System.arraycopy(offsets, 0, next, 0, rows);
+		for(int index = 0; index != count; ++index)
+			postings[next[keys[index]]++] = index;
+
+		return new RatingIndex(IntBuffer.wrap(offsets), IntBuffer.wrap(postings));
+	}
+
+	/**
+	 * Build the index of the user or item column of a data set whose columns
+	 * are only reachable through its accessors, such as a view
+	 *
+	 * @param ratings the data set
+	 * @param byUser true to group by user, false to group by item
+	 * @param maxKey the max key in the column
+	 * @return the index grouped by key
+	 */
+	static RatingIndex build(Ratings ratings, boolean byUser, int maxKey) {
+		int count = ratings.getCount();
+		int rows = maxKey + 1;
+		int[] offsets  = new int[rows + 1];
+		int[] postings = new int[count];
+
+		for(int index = 0; index != count; ++index)
+			offsets[(byUser ? ratings.getUser(index) : ratings.getItem(index)) + 1]++;
+		for(int r = 0; r != rows; ++r)
+			offsets[r + 1] += offsets[r];
+
+		int[] next = new int[rows];
+		System.arraycopy(offsets, 0, next, 0, rows);
+		for(int index = 0; index != count; ++index)
+			postings[next[byUser ? ratings.getUser(index) : ratings.getItem(index)]++] = index;
+
+		return new RatingIndex(IntBuffer.wrap(offsets), IntBuffer.wrap(postings));
+	}
+
+	/**
+	 * Merge the ratings appended after a prebuilt index into a new index. Only
+	 * the appended ratings are counted and scattered, the rows of the base are
+	 * moved with bulk copies, as the appended rating indices are all greater
+	 * and go to the end of their rows
+	 *
+	 * @param base the index of the first base.size() entries of the column
+	 * @param keys the key column, such as the user or item column
+	 * @param count the number of valid entries in the column
+	 * @param maxKey the max key in the column
+	 * @return the index grouped by key
+	 */
+	static RatingIndex merge(RatingIndex base, int[] keys, int count, int maxKey) {
+		int from = base.size();
+		int rows = Math.max(maxKey + 1, base.rows);
+		int[] offsets  = new int[rows + 1];
+		int[] postings = new int[count];
+
+		// count the degree of each key in the delta, then add the base degree
+		for(int index = from; index != count; ++index)
+			offsets[keys[index] + 1]++;
+		for(int r = 0; r != rows; ++r)
+			offsets[r + 1] += offsets[r] + base.degree(r);
+
+		// copy the base rows, the delta goes after them
+		int[] next = new int[rows];
+		IntBuffer source = (base.postings != null) ? base.postings.duplicate() : null;
+		for(int r = 0; r != rows; ++r){
+			int degree = base.degree(r);
+			if(degree != 0 && source != null){
+				source.position(base.start(r));
+				source.get(postings, offsets[r], degree);
+			} else if(degree != 0) {
+				for(int i = 0; i != degree; ++i)
+					postings[offsets[r] + i] = base.posting(base.start(r) + i);
+			}
+			next[r] = offsets[r] + degree;
+		}
+		for(int index = from; index != count; ++index)
+			postings[next[keys[index]]++] = index;
+
+		return new RatingIndex(IntBuffer.wrap(offsets), IntBuffer.wrap(postings));
+	}
+
+	/**
+	 * Get the number of rows of the index
+	 *
+	 * @return the number of rows
+	 */
+	public int rows() {
+		return rows;
+	}
+
+	/**
+	 * Get the number of postings of the index
+	 *
+	 * @return the number of postings
+	 */
+	public int size() {
+		return postings.limit();
+	}
+
+	/**
+	 * Get the number of ratings in the given row
+	 *
+	 * @param r the row number
+	 * @return the number of ratings in the row, 0 if the row is out of range
+	 */
+	public int degree(int r) {
+		if(r < 0 || r >= rows)
+			return 0;
+		return offsets.get(r + 1) - offsets.get(r);
+	}
+
+	/**
+	 * Get the first position of the given row
+	 *
+	 * @param r the row number
+	 * @return the first position of the row
+	 */
+	public int start(int r) {
+		return offsets.get(r);
+	}
+
+	/**
+	 * Get the position after the last position of the given row
+	 *
+	 * @param r the row number
+	 * @return the end position of the row
+	 */
+	public int end(int r) {
+		return offsets.get(r + 1);
+	}
+
+	/**
+	 * Get the rating index stored at the given position
+	 *
+	 * @param pos the position in the postings
+	 * @return the rating index
+	 */
+	public int posting(int pos) {
+		return postings.get(pos);
+	}
+
+	/**
+	 * Copy the rating indices of the given row into an array
+	 *
+	 * @param r the row number
+	 * @param dst the destination array, at least degree(r) long
+	 * @return the number of copied rating indices
+	 */
+	public int copyRow(int r, int[] dst) {
+		int size = degree(r);
+		int start = (size != 0) ? offsets.get(r) : 0;
+		for(int i = 0; i != size; ++i)
+			dst[i] = postings.get(start + i);
+		return size;
+	}
+}
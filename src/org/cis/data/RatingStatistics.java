@@ -0,0 +1,369 @@
+package org.cis.data;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class holds the count, sum, sum of squares, min and max of the rating
+ * values overall, per user and per item, in primitive arrays.
+ *
+ * The statistics of a Ratings are computed once by Ratings.getStatistics(),
+ * in one linear pass over its rating columns which needs no index, the user
+ * side with the totals on one thread and the item side on another, and shared
+ * by every predictor trained on it. They can also be accumulated rating by rating
+ * with add(), for example from a RatingStream
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class RatingStatistics {
+
+	/** the number of ratings below which compute() runs on the calling thread */
+	static final int PARALLEL_THRESHOLD = 1 << 18;
+
+	/** the number of ratings */
+	long count;
+	/** the sum of the ratings */
+	long sum;
+	/** the sum of the squared ratings */
+	long sumOfSquares;
+	/** the min rating */
+	int min = Integer.MAX_VALUE;
+	/** the max rating */
+	int max = Integer.MIN_VALUE;
+
+	/** the per user statistics */
+	final Rows users;
+	/** the per item statistics */
+	final Rows items;
+
+	/**
+	 * This class holds the statistics of the rows of one side, users or items
+	 */
+	static class Rows {
+		/** the number of ratings of each row */
+		int[] count;
+		/** the sum of the ratings of each row */
+		long[] sum;
+		/** the sum of the squared ratings of each row */
+		long[] sumOfSquares;
+		/** the min rating of each row */
+		int[] min;
+		/** the max rating of each row */
+		int[] max;
+		/** the largest row number with a rating, -1 if there is none */
+		int maxId = -1;
+
+		/**
+		 * Construct the statistics of the given number of rows
+		 *
+		 * @param rows the number of rows
+		 */
+		Rows(int rows) {
+			count        = new int[rows];
+			sum          = new long[rows];
+			sumOfSquares = new long[rows];
+			min          = new int[rows];
+			max          = new int[rows];
+		}
+
+		/**
+		 * Make room for the given row
+		 *
+		 * @param r the row number
+		 */
+		void ensure(int r) {
+			if(r < count.length)
+				return;
+			int rows = Math.max(r + 1, count.length + (count.length >> 1));
+			count        = Arrays.copyOf(count, rows);
+			sum          = Arrays.copyOf(sum, rows);
+			sumOfSquares = Arrays.copyOf(sumOfSquares, rows);
+			min          = Arrays.copyOf(min, rows);
+			max          = Arrays.copyOf(max, rows);
+		}
+
+		/**
+		 * Add a rating to a row
+		 *
+		 * @param r the row number
+		 * @param rating the rating value
+		 */
+		void add(int r, int rating) {
+			if(count[r] == 0 || rating < min[r])
+				min[r] = rating;
+			if(count[r] == 0 || rating > max[r])
+				max[r] = rating;
+			count[r]++;
+			sum[r] += rating;
+			sumOfSquares[r] += rating * rating;
+			if(r > maxId)
+				maxId = r;
+		}
+
+		/**
+		 * @param r the row number
+		 * @return true if the row has ratings
+		 */
+		boolean has(int r) {
+			return r >= 0 && r < count.length && count[r] != 0;
+		}
+	}
+
+	/**
+	 * Construct empty statistics, to be filled with add()
+	 */
+	public RatingStatistics() {
+		this(0, 0);
+	}
+
+	/**
+	 * Construct empty statistics
+	 *
+	 * @param maxUserId the expected max user ID
+	 * @param maxItemId the expected max item ID
+	 */
+	public RatingStatistics(int maxUserId, int maxItemId) {
+		users = new Rows(Math.max(maxUserId + 1, 1));
+		items = new Rows(Math.max(maxItemId + 1, 1));
+	}
+
+	/**
+	 * Compute the statistics of a data set in one linear pass over its rating
+	 * columns, the user rows and the totals on one thread and the item rows
+	 * on another
+	 *
+	 * @param ratings the ratings
+	 * @return the statistics
+	 */
+	public static RatingStatistics compute(final Ratings ratings) {
+		final RatingStatistics statistics = new RatingStatistics(ratings.totalUserNumber(), ratings.totalItemNumber());
+		final int n = ratings.getCount();
+
+		Runnable userTask = new Runnable() {
+			public void run() {
+				Rows users = statistics.users;
+				long sum = 0, sumOfSquares = 0;
+				int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+				for(int k = 0; k != n; ++k){
+					int rating = ratings.getRating(k);
+					users.add(ratings.getUser(k), rating);
+					sum += rating;
+					sumOfSquares += rating * rating;
+					if(rating < min)
+						min = rating;
+					if(rating > max)
+						max = rating;
+				}
+				statistics.count        = n;
+				statistics.sum          = sum;
+				statistics.sumOfSquares = sumOfSquares;
+				statistics.min          = min;
+				statistics.max          = max;
+			}
+		};
+		Runnable itemTask = new Runnable() {
+			public void run() {
+				Rows items = statistics.items;
+				for(int k = 0; k != n; ++k)
+					items.add(ratings.getItem(k), ratings.getRating(k));
+			}
+		};
+
+		if(n < PARALLEL_THRESHOLD || Runtime.getRuntime().availableProcessors() == 1){
+			userTask.run();
+			itemTask.run();
+		} else {
+			ExecutorService pool = Executors.newFixedThreadPool(2);
+			try {
+				Future<?> users = pool.submit(userTask);
+				Future<?> items = pool.submit(itemTask);
+				users.get();
+				items.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while computing the statistics", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("failed to compute the statistics", e.getCause());
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		return statistics;
+	}
+
+	/**
+	 * Add a rating
+	 *
+	 * @param user_id the user ID
+	 * @param item_id the item ID
+	 * @param rating the rating value
+	 */
+	public void add(int user_id, int item_id, int rating) {
+		users.ensure(user_id);
+		items.ensure(item_id);
+		users.add(user_id, rating);
+		items.add(item_id, rating);
+
+		count++;
+		sum += rating;
+		sumOfSquares += rating * rating;
+		min = Math.min(min, rating);
+		max = Math.max(max, rating);
+	}
+
+	/**
+	 * @return the number of ratings
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the average rating, NaN if there is no rating
+	 */
+	public double getMean() {
+		return (double) sum / count;
+	}
+
+	/**
+	 * @return the variance of the ratings, NaN if there is no rating
+	 */
+	public double getVariance() {
+		double mean = getMean();
+		return Math.max((double) sumOfSquares / count - mean * mean, 0);
+	}
+
+	/**
+	 * @return the min rating
+	 */
+	public int getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the max rating
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the max user ID with a rating, -1 if there is none
+	 */
+	public int getMaxUserId() {
+		return users.maxId;
+	}
+
+	/**
+	 * @return the max item ID with a rating, -1 if there is none
+	 */
+	public int getMaxItemId() {
+		return items.maxId;
+	}
+
+	/**
+	 * @param user_id the user ID
+	 * @return the number of ratings of the user
+	 */
+	public int getUserCount(int user_id) {
+		return users.has(user_id) ? users.count[user_id] : 0;
+	}
+
+	/**
+	 * @param user_id the user ID
+	 * @return the sum of the ratings of the user
+	 */
+	public long getUserSum(int user_id) {
+		return users.has(user_id) ? users.sum[user_id] : 0;
+	}
+
+	/**
+	 * @param user_id the user ID
+	 * @return the average rating of the user, NaN if the user has no rating
+	 */
+	public double getUserMean(int user_id) {
+		return users.has(user_id) ? (double) users.sum[user_id] / users.count[user_id] : Double.NaN;
+	}
+
+	/**
+	 * @param user_id the user ID
+	 * @return the variance of the ratings of the user, NaN if the user has no rating
+	 */
+	public double getUserVariance(int user_id) {
+		if(!users.has(user_id))
+			return Double.NaN;
+		double mean = getUserMean(user_id);
+		return Math.max((double) users.sumOfSquares[user_id] / users.count[user_id] - mean * mean, 0);
+	}
+
+	/**
+	 * @param user_id the user ID
+	 * @return the min rating of the user, 0 if the user has no rating
+	 */
+	public int getUserMin(int user_id) {
+		return users.has(user_id) ? users.min[user_id] : 0;
+	}
+
+	/**
+	 * @param user_id the user ID
+	 * @return the max rating of the user, 0 if the user has no rating
+	 */
+	public int getUserMax(int user_id) {
+		return users.has(user_id) ? users.max[user_id] : 0;
+	}
+
+	/**
+	 * @param item_id the item ID
+	 * @return the number of ratings of the item
+	 */
+	public int getItemCount(int item_id) {
+		return items.has(item_id) ? items.count[item_id] : 0;
+	}
+
+	/**
+	 * @param item_id the item ID
+	 * @return the sum of the ratings of the item
+	 */
+	public long getItemSum(int item_id) {
+		return items.has(item_id) ? items.sum[item_id] : 0;
+	}
+
+	/**
+	 * @param item_id the item ID
+	 * @return the average rating of the item, NaN if the item has no rating
+	 */
+	public double getItemMean(int item_id) {
+		return items.has(item_id) ? (double) items.sum[item_id] / items.count[item_id] : Double.NaN;
+	}
+
+	/**
+	 * @param item_id the item ID
+	 * @return the variance of the ratings of the item, NaN if the item has no rating
+	 */
+	public double getItemVariance(int item_id) {
+		if(!items.has(item_id))
+			return Double.NaN;
+		double mean = getItemMean(item_id);
+		return Math.max((double) items.sumOfSquares[item_id] / items.count[item_id] - mean * mean, 0);
+	}
+
+	/**
+	 * @param item_id the item ID
+	 * @return the min rating of the item, 0 if the item has no rating
+	 */
+	public int getItemMin(int item_id) {
+		return items.has(item_id) ? items.min[item_id] : 0;
+	}
+
+	/**
+	 * @param item_id the item ID
+	 * @return the max rating of the item, 0 if the item has no rating
+	 */
+	public int getItemMax(int item_id) {
+		return items.has(item_id) ? items.max[item_id] : 0;
+	}
+}
@@ -1,18 +1,32 @@
 package org.cis.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
+import org.cis.util.LongIntHashMap;
+
+/**
+ * This class stores the rating events in a columnar way: the users and items
+ * are kept in growable int arrays and the rating values in a byte array, so
+ * no boxing happens on the access path and the memory is about 9 bytes per rating
+ * 
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
 public class Ratings implements DataSet {
+	
+	/** the default initial capacity of the columns */
+	static final int DEFAULT_CAPACITY = 1024;
 	 
 	/** the number of interaction events in the data set */
 	int count;
 	
-	/** the users index of ratings data */
-	ArrayList<Integer> users;
-	/** the item index of ratings data */
-	ArrayList<Integer> items;
-	/** the rating values index of the ratings data */
-	ArrayList<Integer> values;
+	/** the users column of ratings data */
+	int[] users;
+	/** the items column of ratings data */
+	int[] items;
+	/** the rating values column of the ratings data */
+	byte[] values;
 	
 	/** max user id of the ratings data */
 	int maxUserId;
@@ -23,12 +37,30 @@ public class Ratings implements DataSet {
 	int maxRating;
 	/** min rating of the ratings data */
 	int minRating;
+	/** the running sum of the rating values */
+	long ratingSum;
+	
+	/** the per user and per item statistics, computed on first access */
+	RatingStatistics statistics;
+	
+	/** the compressed sparse row index by user, it covers the first userIndex.size() ratings */
+	RatingIndex userIndex;
+	/** the compressed sparse row index by item, it covers the first itemIndex.size() ratings */
+	RatingIndex itemIndex;
+	
+	/** the (user, item) to first rating index lookup, built on first GetIndex call */
+	LongIntHashMap pairIndex;
 	
-	/** the index stored by user */
+	/** the index stored by user, boxed copy of userIndex */
 	ArrayList<ArrayList<Integer>> indexByUser;
-	/** the index stored by item */
+	/** the index stored by item, boxed copy of itemIndex */
 	ArrayList<ArrayList<Integer>> indexByItem;
 	
+	/** the mapping of external user IDs, null if the IDs are used as they are */
+	IdMapping userMapping;
+	/** the mapping of external item IDs, null if the IDs are used as they are */
+	IdMapping itemMapping;
+	
 	/** randomly generated index */
 	ArrayList<Integer> randomIndex;
 	
@@ -36,10 +68,22 @@ public class Ratings implements DataSet {
 	 * Construct an empty Ratings
 	 */
 	public Ratings(){
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Construct an empty Ratings with the given initial capacity
+	 * 
+	 * @param capacity the expected number of ratings
+	 */
+	public Ratings(int capacity){
+		if(capacity < 1)
+			capacity = 1;
+		
 		this.count  = 0;
-		this.users  = new ArrayList<Integer>();
-		this.items  = new ArrayList<Integer>();
-		this.values = new ArrayList<Integer>();
+		this.users  = new int[capacity];
+		this.items  = new int[capacity];
+		this.values = new byte[capacity];
 		
 		this.maxItemId = -1;
 		this.maxUserId = -1;
@@ -48,13 +92,53 @@ public class Ratings implements DataSet {
 		this.minRating = Integer.MAX_VALUE;
 	}
 	
+	/**
+	 * Add a rating event to the data set. The built indices are kept: the new
+	 * rating is added to the pair index at once, and merged into the user and
+	 * item indices on their next access
+	 * 
+	 * @param user_id the user ID
+	 * @param item_id the item ID
+	 * @param rating the rating value, it must fit into a byte
+	 */
 	public void addRating(int user_id, int item_id, int rating){
-		users.add(user_id);
-		items.add(item_id);
-		values.add(rating);
+		checkRating(user_id, item_id, rating);
+		
+		if(count == users.length)
+			grow(count + 1);
+		
+		users[count]  = user_id;
+		items[count]  = item_id;
+		values[count] = (byte) rating;
 		
 		count++;
 		
+		updateStatistics(user_id, item_id, rating, count - 1);
+	}
+	
+	/**
+	 * Check a rating event before it is stored
+	 * 
+	 * @param user_id the user ID, not negative
+	 * @param item_id the item ID, not negative
+	 * @param rating the rating value, it must fit into a byte
+	 */
+	static void checkRating(int user_id, int item_id, int rating){
+		if(rating < Byte.MIN_VALUE || rating > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("rating value out of range: " + rating);
+		if(user_id < 0 || item_id < 0)
+			throw new IllegalArgumentException("negative ID: " + user_id + ", " + item_id);
+	}
+	
+	/**
+	 * Update the running statistics and the pair index with a stored rating
+	 * 
+	 * @param user_id the user ID
+	 * @param item_id the item ID
+	 * @param rating the rating value
+	 * @param index the index of the rating
+	 */
+	void updateStatistics(int user_id, int item_id, int rating, int index){
 		if(user_id > maxUserId)
 			maxUserId = user_id;
 		if(item_id > maxItemId)
@@ -63,32 +147,179 @@ public class Ratings implements DataSet {
 			minRating = rating;
 		if(rating > maxRating)
 			maxRating = rating;
+		ratingSum += rating;
+		
+		statistics = null;
+		if(pairIndex != null)
+			pairIndex.putIfAbsent(pairKey(user_id, item_id), index);
+		indexByUser = null;
+		indexByItem = null;
+	}
+	
+	/**
+	 * Drop the cached indices, they are rebuilt on next access
+	 */
+	void invalidateIndices(){
+		statistics  = null;
+		userIndex   = null;
+		itemIndex   = null;
+		pairIndex   = null;
+		indexByUser = null;
+		indexByItem = null;
+	}
+	
+	/**
+	 * Grow the columns so that they can hold at least the given number of ratings
+	 * 
+	 * @param minCapacity the required capacity
+	 */
+	private void grow(int minCapacity){
+		int capacity = users.length + (users.length >> 1);
+		if(capacity < minCapacity || capacity < 0)
+			capacity = minCapacity;
 		
+		users  = Arrays.copyOf(users, capacity);
+		items  = Arrays.copyOf(items, capacity);
+		values = Arrays.copyOf(values, capacity);
+	}
+	
+	/**
+	 * Append all the ratings of another data set, in their order
+	 * 
+	 * @param other the ratings to append
+	 */
+	public void append(Ratings other){
+		int n = other.getCount();
+		if(n == 0)
+			return;
+		if(count + n < 0)
+			throw new IllegalStateException("too many ratings: " + ((long) count + n));
+		if(count + n > users.length)
+			grow(count + n);
+		
+		if(other.getClass() == Ratings.class){
+			System.arraycopy(other.users,  0, users,  count, n);
+			System.arraycopy(other.items,  0, items,  count, n);
+			System.arraycopy(other.values, 0, values, count, n);
+		} else {
+			for(int index = 0; index != n; ++index){
+				users[count + index]  = other.getUser(index);
+				items[count + index]  = other.getItem(index);
+				values[count + index] = (byte) other.getRating(index);
+			}
+		}
+		int from = count;
+		count += n;
+		ratingSum += other.ratingSum;
+		
+		if(pairIndex != null){
+			for(int index = from; index != count; ++index)
+				pairIndex.putIfAbsent(pairKey(users[index], items[index]), index);
+		}
+		
+		if(other.maxUserId > maxUserId)
+			maxUserId = other.maxUserId;
+		if(other.maxItemId > maxItemId)
+			maxItemId = other.maxItemId;
+		if(other.minRating < minRating)
+			minRating = other.minRating;
+		if(other.maxRating > maxRating)
+			maxRating = other.maxRating;
+		
+		statistics  = null;
+		indexByUser = null;
+		indexByItem = null;
+	}
+	
+	/**
+	 * Append ratings given as bare columns, such as the parts of a parallel
+	 * reader, in their order. The columns are checked and the running
+	 * statistics updated in one pass, then copied at once; a subclass adds
+	 * them one by one
+	 * 
+	 * @param userColumn the user IDs
+	 * @param itemColumn the item IDs
+	 * @param valueColumn the rating values
+	 * @param n the number of ratings to append from the start of the columns
+	 */
+	public void append(int[] userColumn, int[] itemColumn, byte[] valueColumn, int n){
+		if(getClass() != Ratings.class){
+			for(int index = 0; index != n; ++index)
+				addRating(userColumn[index], itemColumn[index], valueColumn[index]);
+			return;
+		}
+		if(n == 0)
+			return;
+		if(count + n < 0)
+			throw new IllegalStateException("too many ratings: " + ((long) count + n));
+		
+		int maxUser = maxUserId, maxItem = maxItemId;
+		int min = minRating, max = maxRating;
+		long sum = 0;
+		for(int index = 0; index != n; ++index){
+			int user_id = userColumn[index];
+			int item_id = itemColumn[index];
+			int rating  = valueColumn[index];
+			if(user_id < 0 || item_id < 0)
+				throw new IllegalArgumentException("negative ID: " + user_id + ", " + item_id);
+			if(user_id > maxUser)
+				maxUser = user_id;
+			if(item_id > maxItem)
+				maxItem = item_id;
+			if(rating < min)
+				min = rating;
+			if(rating > max)
+				max = rating;
+			sum += rating;
+		}
+		
+		if(count + n > users.length)
+			grow(count + n);
+		System.arraycopy(userColumn,  0, users,  count, n);
+		System.arraycopy(itemColumn,  0, items,  count, n);
+		System.arraycopy(valueColumn, 0, values, count, n);
+		int from = count;
+		count += n;
+		
+		if(pairIndex != null){
+			for(int index = from; index != count; ++index)
+				pairIndex.putIfAbsent(pairKey(users[index], items[index]), index);
+		}
+		
+		maxUserId = maxUser;
+		maxItemId = maxItem;
+		minRating = min;
+		maxRating = max;
+		ratingSum += sum;
+		
+		statistics  = null;
+		indexByUser = null;
+		indexByItem = null;
+	}
+	
+	/**
+	 * Shrink the columns to the number of stored ratings
+	 */
+	public void trimToSize(){
+		if(count == users.length)
+			return;
+		users  = Arrays.copyOf(users, count);
+		items  = Arrays.copyOf(items, count);
+		values = Arrays.copyOf(values, count);
 	}
 	
 	/**
 	 * Build the user indices
 	 */
 	public void BuildUserIndices() {
-		indexByUser = new ArrayList<ArrayList<Integer>>();
-		for (int u = 0; u <= maxUserId; u++)
-			indexByUser.add(new ArrayList<Integer>());
-		// one pass over the data
-		for (int index = 0; index < count; index++)
-			indexByUser.get(users.get(index)).add(index);
+		userIndex = RatingIndex.build(users, count, maxUserId);
 	}
 	
 	/**
 	 * Build the item indices
 	 */
 	public void BuildItemIndices() {
-		indexByItem = new ArrayList<ArrayList<Integer>>();
-		for(int i = 0; i <= maxItemId; ++i)
-			indexByItem.add(new ArrayList<Integer>());
-		
-		// ons pass over the data
-		for (int index = 0; index < count; index++)
-			indexByItem.get(items.get(index)).add(index);
+		itemIndex = RatingIndex.build(items, count, maxItemId);
 	}
 	
 	/**
@@ -102,6 +333,17 @@ public class Ratings implements DataSet {
 		java.util.Collections.shuffle(randomIndex);
 	}
 	
+	/**
+	 * Build the hash index of (user, item) pairs, a pair rated several
+	 * times is mapped to its first event
+	 */
+	public void BuildPairIndex() {
+		LongIntHashMap map = new LongIntHashMap(count, -1);
+		for(int index = 0; index != count; ++index)
+			map.putIfAbsent(pairKey(getUser(index), getItem(index)), index);
+		pairIndex = map;
+	}
+	
 	/**
 	 * Get index for a given user and item
 	 * 
@@ -110,10 +352,46 @@ public class Ratings implements DataSet {
 	 * @return: the index of the first event encountered that matches the user ID and item ID
 	 */
 	public int GetIndex(int user_id, int item_id) {
-		for(int index = 0; index != count; ++index)
-			if(users.get(index) == user_id && items.get(index) == item_id)
-				return index;
-		return -1;
+		if(pairIndex == null)
+			BuildPairIndex();
+		return pairIndex.get(pairKey(user_id, item_id));
+	}
+	
+	/**
+	 * Pack a user ID and an item ID into one long key
+	 * 
+	 * @param user_id the user ID
+	 * @param item_id the item ID
+	 * @return the key of the pair
+	 */
+	public static long pairKey(int user_id, int item_id) {
+		return ((long) user_id << 32) | (item_id & 0xffffffffL);
+	}
+	
+	/**
+	 * Get the compressed sparse row index by user, built on first access.
+	 * The ratings added since then are merged into it
+	 * @return the index by user
+	 */
+	public RatingIndex getUserIndex(){
+		if(userIndex == null)
+			BuildUserIndices();
+		else if(userIndex.size() != count)
+			userIndex = RatingIndex.merge(userIndex, users, count, maxUserId);
+		return userIndex;
+	}
+	
+	/**
+	 * Get the compressed sparse row index by item, built on first access.
+	 * The ratings added since then are merged into it
+	 * @return the index by item
+	 */
+	public RatingIndex getItemIndex(){
+		if(itemIndex == null)
+			BuildItemIndices();
+		else if(itemIndex.size() != count)
+			itemIndex = RatingIndex.merge(itemIndex, items, count, maxItemId);
+		return itemIndex;
 	}
 	
 	/**
@@ -121,7 +399,8 @@ public class Ratings implements DataSet {
 	 * @return the index sorted by user
 	 */
 	public ArrayList<ArrayList<Integer>> getIndicesByUser(){
-		BuildUserIndices();
+		if(indexByUser == null)
+			indexByUser = toLists(getUserIndex());
 		return this.indexByUser;
 	}
 	
@@ -130,22 +409,42 @@ public class Ratings implements DataSet {
 	 * @return the index sorted by item
 	 */
 	public ArrayList<ArrayList<Integer>> getIndicesByItem(){
-		BuildItemIndices();
+		if(indexByItem == null)
+			indexByItem = toLists(getItemIndex());
 		return this.indexByItem;
 	}
 	
+	/**
+	 * Convert a compressed sparse row index to nested lists
+	 * @param index the index to convert
+	 * @return the rating indices of each row
+	 */
+	private static ArrayList<ArrayList<Integer>> toLists(RatingIndex index){
+		int rows = index.rows();
+		ArrayList<ArrayList<Integer>> lists = new ArrayList<ArrayList<Integer>>(rows);
+		for(int r = 0; r != rows; ++r){
+			int end = index.end(r);
+			ArrayList<Integer> list = new ArrayList<Integer>(index.degree(r));
+			for(int pos = index.start(r); pos != end; ++pos)
+				list.add(index.posting(pos));
+			lists.add(list);
+		}
+		return lists;
+	}
+	
 	/**
 	 * Get the items involved with the given user 
 	 * @param user_id the given user's id 
 	 * @return the items involved with the given user
 	 */
 	public ArrayList<Integer> getItemsByUser(int user_id){
-		ArrayList<Integer> list = new ArrayList<Integer>();
-		for( int i = 0; i != count; ++i){
-			if(users.get(i) == user_id){
-				list.add(items.get(i));
-			}
-		}
+		RatingIndex index = getUserIndex();
+		ArrayList<Integer> list = new ArrayList<Integer>(index.degree(user_id));
+		if(index.degree(user_id) == 0)
+			return list;
+		int end = index.end(user_id);
+		for(int pos = index.start(user_id); pos != end; ++pos)
+			list.add(getItem(index.posting(pos)));
 		return list;
 	}
 	
@@ -155,25 +454,56 @@ public class Ratings implements DataSet {
 	 * @return the users involved with the given item
 	 */
 	public ArrayList<Integer> getUsersByItem(int item_id){
-		ArrayList<Integer> list = new ArrayList<Integer>();
-		for(int i = 0; i != count; ++i){
-			if(items.get(i) == item_id){
-				list.add(users.get(i));
-			}
-		}
+		RatingIndex index = getItemIndex();
+		ArrayList<Integer> list = new ArrayList<Integer>(index.degree(item_id));
+		if(index.degree(item_id) == 0)
+			return list;
+		int end = index.end(item_id);
+		for(int pos = index.start(item_id); pos != end; ++pos)
+			list.add(getUser(index.posting(pos)));
 		return list;
 	}
 	
 	/**
-	 * Get the average rating of all the rating values
+	 * Get the average rating of all the rating values, from the running sum
 	 * 
 	 * @return the average rating
 	 */
 	public double averageRating(){
-		double avg = 0;
-		for( int i = 0; i != count; ++i)
-			avg += values.get(i);
-		return avg/count;
+		return (double) ratingSum / count;
+	}
+	
+	/**
+	 * Get the count, sum, sum of squares, min and max of the ratings overall,
+	 * per user and per item, computed once and shared by the predictors
+	 * 
+	 * @return the statistics
+	 */
+	public RatingStatistics getStatistics(){
+		if(statistics == null)
+			statistics = RatingStatistics.compute(this);
+		return statistics;
+	}
+	
+	/**
+	 * Get the number of ratings of a user, from the index by user, so no
+	 * counter is kept per user ID while the ratings are added
+	 * 
+	 * @param user_id the user ID
+	 * @return the number of ratings of the user
+	 */
+	public int getUserCount(int user_id){
+		return getUserIndex().degree(user_id);
+	}
+	
+	/**
+	 * Get the number of ratings of an item, from the index by item
+	 * 
+	 * @param item_id the item ID
+	 * @return the number of ratings of the item
+	 */
+	public int getItemCount(int item_id){
+		return getItemIndex().degree(item_id);
 	}
 	
 	/**
@@ -234,7 +564,7 @@ public class Ratings implements DataSet {
 	 * @return the user_id
 	 */
 	public int getUser(int index){
-		return users.get(index);
+		return users[index];
 	}
 	
 	/**
@@ -243,7 +573,7 @@ public class Ratings implements DataSet {
 	 * @return the item_id
 	 */
 	public int getItem(int index){
-		return items.get(index);
+		return items[index];
 	}
 	
 	/**
@@ -252,15 +582,60 @@ public class Ratings implements DataSet {
 	 * @return the rating value
 	 */
 	public int getRating(int index){
-		return values.get(index);
+		return values[index];
+	}
+	
+	/**
+	 * Take an immutable snapshot of the data set, which every predictor can
+	 * be trained on, one after another or concurrently, without mutating it
+	 * 
+	 * @return the read-only snapshot
+	 */
+	public Ratings snapshot(){
+		return new ImmutableRatings(this);
+	}
+	
+	/**
+	 * Get the mapping of external user IDs
+	 * @return the user mapping, null if the IDs are not remapped
+	 */
+	public IdMapping getUserMapping(){
+		return userMapping;
+	}
+	
+	/**
+	 * Set the mapping of external user IDs
+	 * @param userMapping the mapping used to produce the user IDs
+	 */
+	public void setUserMapping(IdMapping userMapping){
+		this.userMapping = userMapping;
+	}
+	
+	/**
+	 * Get the mapping of external item IDs
+	 * @return the item mapping, null if the IDs are not remapped
+	 */
+	public IdMapping getItemMapping(){
+		return itemMapping;
+	}
+	
+	/**
+	 * Set the mapping of external item IDs
+	 * @param itemMapping the mapping used to produce the item IDs
+	 */
+	public void setItemMapping(IdMapping itemMapping){
+		this.itemMapping = itemMapping;
 	}
 	
 	/**
 	 * Clear the data set
 	 */
 	public void clear(){
-		users.clear();
-		items.clear();
-		values.clear();
+		users  = new int[1];
+		items  = new int[1];
+		values = new byte[1];
+		count  = 0;
+		ratingSum  = 0;
+		invalidateIndices();
 	}
 }
@@ -0,0 +1,119 @@
+package org.cis.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class splits one Ratings into training and test views without copying
+ * the rating data: every split is one permutation of the rating indices and
+ * the views are ranges of it. Each range is sorted, so a view reads the base
+ * ratings in ascending order.
+ *
+ * The splits return pairs of views, [0] is the training part and [1] the test part
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class RatingsSplit {
+
+	/**
+	 * Split the ratings at random into a training part and a test part
+	 *
+	 * @param ratings the ratings to split
+	 * @param testRatio the ratio of the ratings in the test part, in 0 ... 1
+	 * @param seed the seed of the random split
+	 * @return the training view and the test view
+	 */
+	public static RatingsView[] holdout(Ratings ratings, double testRatio, long seed) {
+		if(testRatio < 0 || testRatio > 1)
+			throw new IllegalArgumentException("test ratio out of range: " + testRatio);
+		int n = ratings.getCount();
+		int[] order = new EpochOrder(n, seed).next();
+		int cut = (int) Math.round(n * testRatio);
+		Arrays.sort(order, 0, cut);
+		Arrays.sort(order, cut, n);
+
+		return new RatingsView[] {
+				new RatingsView(ratings, order, cut, n),
+				new RatingsView(ratings, order, 0, cut)
+		};
+	}
+
+	/**
+	 * Split the ratings at random into k folds of about the same size, the
+	 * test part of fold f is the f-th fold and its training part the others
+	 *
+	 * @param ratings the ratings to split
+	 * @param k the number of folds
+	 * @param seed the seed of the random split
+	 * @return the training view and the test view of each fold
+	 */
+	public static RatingsView[][] kFold(Ratings ratings, int k, long seed) {
+		if(k < 2)
+			throw new IllegalArgumentException("at least 2 folds are needed: " + k);
+		int n = ratings.getCount();
+		int[] order = new EpochOrder(n, seed).next();
+
+		int[] bounds = new int[k + 1];
+		for(int f = 0; f <= k; ++f)
+			bounds[f] = (int) ((long) n * f / k);
+		for(int f = 0; f != k; ++f)
+			Arrays.sort(order, bounds[f], bounds[f + 1]);
+
+		// the training part of a fold is the ranges before and after its test range
+		RatingsView[][] folds = new RatingsView[k][];
+		for(int f = 0; f != k; ++f){
+			folds[f] = new RatingsView[] {
+					new RatingsView(ratings, order, 0, bounds[f], bounds[f + 1], n),
+					new RatingsView(ratings, order, bounds[f], bounds[f + 1])
+			};
+		}
+		return folds;
+	}
+
+	/**
+	 * Hold out k random ratings of every user. The users with no more than
+	 * k ratings keep all of them in the training part
+	 *
+	 * @param ratings the ratings to split
+	 * @param k the number of test ratings per user
+	 * @param seed the seed of the random split
+	 * @return the training view and the test view
+	 */
+	public static RatingsView[] leaveKOut(Ratings ratings, int k, long seed) {
+		if(k < 1)
+			throw new IllegalArgumentException("at least 1 rating must be left out: " + k);
+		int n = ratings.getCount();
+		RatingIndex index = ratings.getUserIndex();
+		Random random = new Random(seed);
+
+		// the test ratings fill order from the front, the training ones from the back
+		int[] order = new int[n];
+		int[] row = new int[16];
+		int test = 0, train = n;
+		for(int u = 0; u != index.rows(); ++u){
+			int degree = index.degree(u);
+			if(degree > row.length)
+				row = new int[Math.max(degree, row.length * 2)];
+			index.copyRow(u, row);
+
+			int held = (degree > k) ? k : 0;
+			for(int i = 0; i != held; ++i){
+				int j = i + random.nextInt(degree - i);
+				int t = row[i];
+				row[i] = row[j];
+				row[j] = t;
+				order[test++] = row[i];
+			}
+			for(int i = held; i != degree; ++i)
+				order[--train] = row[i];
+		}
+		Arrays.sort(order, 0, test);
+		Arrays.sort(order, test, n);
+
+		return new RatingsView[] {
+				new RatingsView(ratings, order, test, n),
+				new RatingsView(ratings, order, 0, test)
+		};
+	}
+}
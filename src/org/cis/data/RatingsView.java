@@ -0,0 +1,152 @@
+package org.cis.data;
+
+/**
+ * This class implementing a read-only view over a subset of another Ratings,
+ * such as the training or test part of a split. The view holds no rating data:
+ * its ratings are the base ratings order[from] ... order[to - 1] followed by
+ * order[from2] ... order[to2 - 1], and several views share one order array.
+ *
+ * The statistics of the view are computed once when it is created, except
+ * the max IDs which are those of the base. The base ratings must not change
+ * while the view is used
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class RatingsView extends Ratings {
+
+	/** the viewed ratings */
+	final Ratings base;
+	/** the base indices, shared between the views of a split */
+	final int[] order;
+	/** the first position of the first range in order */
+	final int from;
+	/** the size of the first range */
+	final int size1;
+	/** the first position of the second range in order */
+	final int from2;
+
+	/**
+	 * Construct a view of the base ratings order[from] ... order[to - 1]
+	 *
+	 * @param base the viewed ratings
+	 * @param order the base indices
+	 * @param from the first position of the range
+	 * @param to the position after the range
+	 */
+	public RatingsView(Ratings base, int[] order, int from, int to) {
+		this(base, order, from, to, to, to);
+	}
+
+	/**
+	 * Construct a view of two ranges of base indices
+	 *
+	 * @param base the viewed ratings
+	 * @param order the base indices
+	 * @param from the first position of the first range
+	 * @param to the position after the first range
+	 * @param from2 the first position of the second range
+	 * @param to2 the position after the second range
+	 */
+	public RatingsView(Ratings base, int[] order, int from, int to, int from2, int to2) {
+		super(1);
+		if(from < 0 || to < from || from2 < 0 || to2 < from2 || to > order.length || to2 > order.length)
+			throw new IllegalArgumentException("invalid ranges: [" + from + ", " + to + ") [" + from2 + ", " + to2 + ")");
+		this.base  = base;
+		this.order = order;
+		this.from  = from;
+		this.size1 = to - from;
+		this.from2 = from2;
+		this.count = (to - from) + (to2 - from2);
+
+		this.userMapping = base.getUserMapping();
+		this.itemMapping = base.getItemMapping();
+
+		for(int index = 0; index != count; ++index)
+			updateStatistics(getUser(index), getItem(index), getRating(index), index);
+
+		// keep the ID range of the base, so a model trained on a view has
+		// a row for every ID of the other views of the split
+		this.maxUserId = Math.max(maxUserId, base.totalUserNumber());
+		this.maxItemId = Math.max(maxItemId, base.totalItemNumber());
+	}
+
+	/**
+	 * Get the index of a rating in the base ratings
+	 *
+	 * @param index the index of the rating in the view
+	 * @return the index of the rating in the base ratings
+	 */
+	public int baseIndex(int index) {
+		return (index < size1) ? order[from + index] : order[from2 + index - size1];
+	}
+
+	/**
+	 * @return the viewed ratings
+	 */
+	public Ratings getBase() {
+		return base;
+	}
+
+	/**
+	 * Get the user_id given the index
+	 */
+	public int getUser(int index) {
+		return base.getUser(baseIndex(index));
+	}
+
+	/**
+	 * Get the item_id given the index
+	 */
+	public int getItem(int index) {
+		return base.getItem(baseIndex(index));
+	}
+
+	/**
+	 * Get the rating given the index
+	 */
+	public int getRating(int index) {
+		return base.getRating(baseIndex(index));
+	}
+
+	/**
+	 * Build the user indices through the accessors
+	 */
+	public void BuildUserIndices() {
+		userIndex = RatingIndex.build(this, true, maxUserId);
+	}
+
+	/**
+	 * Build the item indices through the accessors
+	 */
+	public void BuildItemIndices() {
+		itemIndex = RatingIndex.build(this, false, maxItemId);
+	}
+
+	/**
+	 * The view is read-only
+	 */
+	public void addRating(int user_id, int item_id, int rating) {
+		throw new UnsupportedOperationException("a ratings view is read-only");
+	}
+
+	/**
+	 * The view is read-only
+	 */
+	public void append(Ratings other) {
+		throw new UnsupportedOperationException("a ratings view is read-only");
+	}
+
+	/**
+	 * The view is read-only
+	 */
+	public void clear() {
+		throw new UnsupportedOperationException("a ratings view is read-only");
+	}
+
+	/**
+	 * The view holds no columns
+	 */
+	public void trimToSize() {
+	}
+}
@@ -0,0 +1,255 @@
+package org.cis.data;
+
+import java.util.Arrays;
+
+import org.cis.matrix.ImmutableSparseBooleanMatrix;
+import org.cis.matrix.IntConsumer;
+import org.cis.matrix.SparseBooleanMatrix;
+
+/**
+ * This class holding a relabeling of the user and item IDs which puts related
+ * IDs next to each other, so the factor rows touched one after the other by a
+ * training pass lie in the same cache lines and pages.
+ *
+ * byDegree() gives the smallest IDs to the users and items with the most
+ * ratings, bfs() numbers them in the order of a breadth first search over the
+ * bipartite rating graph, so the items of a user and the users of an item get
+ * close IDs. ID 0 is never moved and the IDs above those of the ratings keep
+ * their value. A model is trained on apply(ratings) and its results are
+ * translated back with toOldUser() and toOldItem(), or by wrapping it into a
+ * ReorderedPredictor
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class Reordering {
+
+	/** the new ID of each old user ID */
+	final int[] userToNew;
+	/** the old ID of each new user ID */
+	final int[] userToOld;
+	/** the new ID of each old item ID */
+	final int[] itemToNew;
+	/** the old ID of each new item ID */
+	final int[] itemToOld;
+
+	/**
+	 * Construct a reordering from its old to new tables
+	 *
+	 * @param userToNew the new ID of each old user ID
+	 * @param itemToNew the new ID of each old item ID
+	 */
+	Reordering(int[] userToNew, int[] itemToNew) {
+		this.userToNew = userToNew;
+		this.userToOld = inverse(userToNew);
+		this.itemToNew = itemToNew;
+		this.itemToOld = inverse(itemToNew);
+	}
+
+	/**
+	 * Relabel the users and the items by decreasing number of ratings
+	 *
+	 * @param ratings the ratings
+	 * @return the reordering
+	 */
+	public static Reordering byDegree(Ratings ratings) {
+		return new Reordering(
+				degreeOrder(ratings.getUserIndex(), ratings.totalUserNumber()),
+				degreeOrder(ratings.getItemIndex(), ratings.totalItemNumber()));
+	}
+
+	/**
+	 * Relabel the users and the items in the visiting order of a breadth first
+	 * search over the rating graph, started from the user with the most ratings
+	 * of each connected component
+	 *
+	 * @param ratings the ratings
+	 * @return the reordering
+	 */
+	public static Reordering bfs(Ratings ratings) {
+		RatingIndex userIndex = ratings.getUserIndex();
+		RatingIndex itemIndex = ratings.getItemIndex();
+		int[] userToNew = new int[ratings.totalUserNumber() + 1];
+		int[] itemToNew = new int[ratings.totalItemNumber() + 1];
+		Arrays.fill(userToNew, -1);
+		Arrays.fill(itemToNew, -1);
+		userToNew[0] = 0;
+		itemToNew[0] = 0;
+		int nextUser = 1, nextItem = 1;
+
+		// the queue holds user u as u and item i as -i - 1
+		int[] queue = new int[userToNew.length + itemToNew.length];
+		int[] roots = degreeOrder(userIndex, ratings.totalUserNumber());
+		int[] byDegree = inverse(roots);
+		for(int r = 1; r != byDegree.length; ++r){
+			int root = byDegree[r];
+			if(userToNew[root] != -1 || root >= userIndex.rows() || userIndex.degree(root) == 0)
+				continue;
+			int head = 0, tail = 0;
+			userToNew[root] = nextUser++;
+			queue[tail++] = root;
+			while(head != tail){
+				int node = queue[head++];
+				if(node >= 0){
+					for(int pos = userIndex.start(node); pos != userIndex.end(node); ++pos){
+						int i = ratings.getItem(userIndex.posting(pos));
+						if(itemToNew[i] == -1){
+							itemToNew[i] = nextItem++;
+							queue[tail++] = -i - 1;
+						}
+					}
+				} else {
+					int i = -node - 1;
+					for(int pos = itemIndex.start(i); pos != itemIndex.end(i); ++pos){
+						int u = ratings.getUser(itemIndex.posting(pos));
+						if(userToNew[u] == -1){
+							userToNew[u] = nextUser++;
+							queue[tail++] = u;
+						}
+					}
+				}
+			}
+		}
+
+		// the IDs without ratings follow, in their old order
+		for(int u = 1; u != userToNew.length; ++u){
+			if(userToNew[u] == -1)
+				userToNew[u] = nextUser++;
+		}
+		for(int i = 1; i != itemToNew.length; ++i){
+			if(itemToNew[i] == -1)
+				itemToNew[i] = nextItem++;
+		}
+		return new Reordering(userToNew, itemToNew);
+	}
+
+	/**
+	 * Get the new IDs 1 ... maxKey by decreasing degree, ties in the old order
+	 *
+	 * @param index the index of the ratings by key
+	 * @param maxKey the max key
+	 * @return the new ID of each old ID
+	 */
+	private static int[] degreeOrder(RatingIndex index, int maxKey) {
+		long[] keys = new long[maxKey];
+		for(int k = 1; k <= maxKey; ++k){
+			int degree = (k < index.rows()) ? index.degree(k) : 0;
+			keys[k - 1] = ((long) (Integer.MAX_VALUE - degree) << 32) | k;
+		}
+		Arrays.sort(keys);
+
+		int[] toNew = new int[maxKey + 1];
+		for(int r = 0; r != maxKey; ++r)
+			toNew[(int) keys[r]] = r + 1;
+		return toNew;
+	}
+
+	/**
+	 * Get the inverse of a permutation
+	 *
+	 * @param permutation the permutation
+	 * @return the inverse permutation
+	 */
+	private static int[] inverse(int[] permutation) {
+		int[] inverse = new int[permutation.length];
+		for(int k = 0; k != permutation.length; ++k)
+			inverse[permutation[k]] = k;
+		return inverse;
+	}
+
+	/**
+	 * Copy the ratings with the new IDs, in their order. The copy has no
+	 * IdMapping since its IDs are not those of the input files any more
+	 *
+	 * @param ratings the ratings with the old IDs
+	 * @return the ratings with the new IDs
+	 */
+	public Ratings apply(Ratings ratings) {
+		int n = ratings.getCount();
+		Ratings reordered = new Ratings(n);
+		for(int index = 0; index != n; ++index)
+			reordered.addRating(
+					toNewUser(ratings.getUser(index)),
+					toNewItem(ratings.getItem(index)),
+					ratings.getRating(index));
+		return reordered;
+	}
+
+	/**
+	 * Copy a user by user matrix, such as a trust graph, with the new user IDs
+	 * on both dimensions
+	 *
+	 * @param matrix the matrix with the old user IDs
+	 * @return the matrix with the new user IDs
+	 */
+	public SparseBooleanMatrix apply(SparseBooleanMatrix matrix) {
+		int rows = Math.max(matrix.getRowDimension(), userToNew.length);
+		int columns = Math.max(matrix.getColumnDimension(), userToNew.length);
+		final SparseBooleanMatrix reordered = new SparseBooleanMatrix(rows, columns);
+		for(int r = 0; r <= matrix.getRow(); ++r){
+			final int row = toNewUser(r);
+			matrix.forEachInRow(r, new IntConsumer() {
+				public void accept(int c) {
+					reordered.addEntry(row, toNewUser(c));
+				}
+			});
+		}
+		return reordered;
+	}
+
+	/**
+	 * Copy a frozen user by user matrix with the new user IDs on both dimensions
+	 *
+	 * @param matrix the matrix with the old user IDs
+	 * @return the matrix with the new user IDs
+	 */
+	public ImmutableSparseBooleanMatrix apply(ImmutableSparseBooleanMatrix matrix) {
+		int count = matrix.getNonEmpty();
+		int[] rows = new int[count];
+		int[] columns = new int[count];
+		int k = 0;
+		for(int r = 0; r != matrix.getRowDimension(); ++r){
+			for(int pos = matrix.rowStart(r); pos != matrix.rowEnd(r); ++pos){
+				rows[k] = toNewUser(r);
+				columns[k] = toNewUser(matrix.columnIndex(pos));
+				k++;
+			}
+		}
+		return ImmutableSparseBooleanMatrix.build(
+				Math.max(matrix.getRowDimension(), userToNew.length),
+				Math.max(matrix.getColumnDimension(), userToNew.length),
+				rows, columns, count);
+	}
+
+	/**
+	 * @param user_id the old user ID
+	 * @return the new user ID
+	 */
+	public int toNewUser(int user_id) {
+		return (user_id < userToNew.length) ? userToNew[user_id] : user_id;
+	}
+
+	/**
+	 * @param user_id the new user ID
+	 * @return the old user ID
+	 */
+	public int toOldUser(int user_id) {
+		return (user_id < userToOld.length) ? userToOld[user_id] : user_id;
+	}
+
+	/**
+	 * @param item_id the old item ID
+	 * @return the new item ID
+	 */
+	public int toNewItem(int item_id) {
+		return (item_id < itemToNew.length) ? itemToNew[item_id] : item_id;
+	}
+
+	/**
+	 * @param item_id the new item ID
+	 * @return the old item ID
+	 */
+	public int toOldItem(int item_id) {
+		return (item_id < itemToOld.length) ? itemToOld[item_id] : item_id;
+	}
+}
@@ -0,0 +1,134 @@
+package org.cis.data;
+
+/**
+ * This class generating a cache aware visiting order of the ratings: the rating
+ * matrix is cut into tiles of userBlockSize users by itemBlockSize items, an
+ * epoch visits the tiles in a random order and the ratings of a tile in a
+ * random order. While a tile is visited only its block of user factors and its
+ * block of item factors are touched, so they stay in the L2 cache
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class TiledEpochOrder extends EpochOrder {
+
+	/** the L2 cache size assumed by blockSizeFor() */
+	static final int L2_CACHE_SIZE = 256 * 1024;
+	/** the max number of tiles */
+	static final long MAX_TILES = 1 << 24;
+
+	/** the rating indices grouped by tile */
+	final int[] grouped;
+	/** the start of each non-empty tile in grouped, with one extra sentinel */
+	final int[] tileOffsets;
+
+	/**
+	 * Construct the tiled order with a time based seed
+	 *
+	 * @param ratings the ratings
+	 * @param userBlockSize the number of users of a tile
+	 * @param itemBlockSize the number of items of a tile
+	 */
+	public TiledEpochOrder(Ratings ratings, int userBlockSize, int itemBlockSize) {
+		this(ratings, userBlockSize, itemBlockSize, System.nanoTime());
+	}
+
+	/**
+	 * Construct the tiled order
+	 *
+	 * @param ratings the ratings
+	 * @param userBlockSize the number of users of a tile
+	 * @param itemBlockSize the number of items of a tile
+	 * @param seed the seed of the generator
+	 */
+	public TiledEpochOrder(Ratings ratings, int userBlockSize, int itemBlockSize, long seed) {
+		super(ratings.getCount(), seed);
+		if(userBlockSize < 1 || itemBlockSize < 1)
+			throw new IllegalArgumentException("block sizes must be positive: " + userBlockSize + ", " + itemBlockSize);
+
+		int count = ratings.getCount();
+		int userBlocks = ratings.totalUserNumber() / userBlockSize + 1;
+		int itemBlocks = ratings.totalItemNumber() / itemBlockSize + 1;
+		if((long) userBlocks * itemBlocks > MAX_TILES)
+			throw new IllegalArgumentException("too many tiles, use larger blocks: " + userBlocks + " x " + itemBlocks);
+		int tiles = userBlocks * itemBlocks;
+
+		// counting sort of the ratings by tile, tile t = user block * itemBlocks + item block
+		int[] tile = new int[count];
+		int[] offsets = new int[tiles + 1];
+		for(int index = 0; index != count; ++index){
+			tile[index] = ratings.getUser(index) / userBlockSize * itemBlocks + ratings.getItem(index) / itemBlockSize;
+			offsets[tile[index] + 1]++;
+		}
+		int nonEmpty = 0;
+		for(int t = 0; t != tiles; ++t){
+			if(offsets[t + 1] != 0)
+				nonEmpty++;
+			offsets[t + 1] += offsets[t];
+		}
+
+		grouped = new int[count];
+		int[] next = new int[tiles];
+		System.arraycopy(offsets, 0, next, 0, tiles);
+		for(int index = 0; index != count; ++index)
+			grouped[next[tile[index]]++] = index;
+
+		// keep the non-empty tiles only, the blocks array holds their visiting order
+		tileOffsets = new int[nonEmpty + 1];
+		int k = 0;
+		for(int t = 0; t != tiles; ++t){
+			if(offsets[t + 1] != offsets[t])
+				tileOffsets[++k] = offsets[t + 1];
+		}
+		blocks = new int[nonEmpty];
+		for(int b = 0; b != nonEmpty; ++b)
+			blocks[b] = b;
+	}
+
+	/**
+	 * Get a block size whose factor rows of a user block and an item block
+	 * fit together in half of a typical L2 cache
+	 *
+	 * @param featureNumber the number of latent factors
+	 * @return the number of users (or items) of a block
+	 */
+	public static int blockSizeFor(int featureNumber) {
+		return Math.max(L2_CACHE_SIZE / 4 / (Math.max(featureNumber, 1) * 8), 1);
+	}
+
+	/**
+	 * The tiles are fixed by the constructor
+	 */
+	public EpochOrder setBlockSize(int blockSize) {
+		throw new UnsupportedOperationException("the tiles of a tiled order are fixed");
+	}
+
+	/**
+	 * @return the number of non-empty tiles
+	 */
+	public int tileNumber() {
+		return blocks.length;
+	}
+
+	/**
+	 * Shuffle the tiles and the ratings inside each tile for the next epoch
+	 */
+	public int[] next() {
+		shuffle(blocks, blocks.length);
+		int pos = 0;
+		for(int b = 0; b != blocks.length; ++b){
+			int start = tileOffsets[blocks[b]];
+			int end = tileOffsets[blocks[b] + 1];
+			// Fisher-Yates inside the tile, then copy the tile to the order
+			for(int i = start; i != end; ++i){
+				int j = start + nextInt(i - start + 1);
+				int t = grouped[i];
+				grouped[i] = grouped[j];
+				grouped[j] = t;
+			}
+			System.arraycopy(grouped, start, order, pos, end - start);
+			pos += end - start;
+		}
+		return order;
+	}
+}
@@ -2,6 +2,7 @@ package org.cis.eval;
 
 import org.cis.cf.algorithm.RatingPredictor;
 import org.cis.data.Ratings;
+import org.cis.io.RatingStream;
 
 /**
  * This interface defining evaluation function
@@ -19,4 +20,13 @@ public interface Evaluator {
 	 */
 	public double evaluate(RatingPredictor rp, Ratings ratings);
 	
+	/**
+	 * Evaluate the performance the RatingPredictor on validation ratings streamed
+	 * from disk, the validation data is never held in memory
+	 * @param rp the RatingPredictor to be evaluate
+	 * @param stream the stream of the validation ratings
+	 * @return the performance
+	 */
+	public double evaluate(RatingPredictor rp, RatingStream stream);
+	
 }
@@ -1,7 +1,10 @@
 package org.cis.eval;
 
+import java.io.IOException;
+
 import org.cis.cf.algorithm.RatingPredictor;
 import org.cis.data.Ratings;
+import org.cis.io.RatingStream;
 
 /**
  * This class implementing the RMSE metric 
@@ -35,5 +38,30 @@ public class RmseEvaluator implements Evaluator {
 		rmse = Math.sqrt(rmse);
 		return rmse;
 	}
-	
+
+	/**
+	 * Calculate the RMSE performance of a RatingPredictor on streamed ratings
+	 */
+	public double evaluate(final RatingPredictor rp, RatingStream stream) {
+		final double[] sum = new double[1];
+		long count = 0;
+		try {
+			count = stream.forEachBatch(new RatingStream.BatchHandler() {
+				public void handle(RatingStream.Batch batch) {
+					double err;
+					for(int k = 0; k != batch.size; ++k){
+						err = rp.predict(batch.users[k], batch.items[k], true) - batch.values[k];
+						sum[0] += err * err;
+					}
+				}
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		double rmse = sum[0] / count;
+		rmse = Math.sqrt(rmse);
+		return rmse;
+	}
+
 }
@@ -0,0 +1,106 @@
+package org.cis.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+import org.cis.data.BufferRatings;
+import org.cis.data.RatingIndex;
+import org.cis.data.Ratings;
+
+/**
+ * This class reads the binary ratings format written by BinaryRatingsWriter.
+ * The file is memory mapped and the columns and indices are used in place,
+ * so loading costs no parsing and the pages are shared between processes.
+ * 
+ * The layout is little endian, every section starts at a multiple of 4:
+ * a 64 bytes header (magic, version, count, max user id, max item id,
+ * min rating, max rating, user rows, item rows), the users column, the items
+ * column, the rating values column (one byte each), the user offsets and
+ * postings, and the item offsets and postings
+ * 
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class BinaryRatingsReader implements RatingsReader {
+	
+	/** the magic number of the format, "CISR" */
+	public static final int MAGIC = 0x43495352;
+	/** the version of the format */
+	public static final int VERSION = 1;
+	/** the size of the header in bytes */
+	public static final int HEADER_SIZE = 64;
+	
+	/**
+	 * Read ratings data from binary file
+	 */
+	public Ratings read(String filePath) {
+		Ratings ratings = null;
+		
+		try {
+			RandomAccessFile file = new RandomAccessFile(filePath, "r");
+			FileChannel channel = file.getChannel();
+			
+			ByteBuffer header = map(channel, 0, HEADER_SIZE);
+			if(header.getInt() != MAGIC)
+				throw new IOException("not a binary ratings file: " + filePath);
+			int version = header.getInt();
+			if(version != VERSION)
+				throw new IOException("unsupported binary ratings version: " + version);
+			int count     = header.getInt();
+			int maxUserId = header.getInt();
+			int maxItemId = header.getInt();
+			int minRating = header.getInt();
+			int maxRating = header.getInt();
+			int userRows  = header.getInt();
+			int itemRows  = header.getInt();
+			
+			long pos = HEADER_SIZE;
+			IntBuffer users = map(channel, pos, 4L * count).asIntBuffer();
+			pos += 4L * count;
+			IntBuffer items = map(channel, pos, 4L * count).asIntBuffer();
+			pos += 4L * count;
+			ByteBuffer values = map(channel, pos, count);
+			pos += (count + 3) & ~3L;
+			
+			IntBuffer userOffsets = map(channel, pos, 4L * (userRows + 1)).asIntBuffer();
+			pos += 4L * (userRows + 1);
+			IntBuffer userPostings = map(channel, pos, 4L * count).asIntBuffer();
+			pos += 4L * count;
+			IntBuffer itemOffsets = map(channel, pos, 4L * (itemRows + 1)).asIntBuffer();
+			pos += 4L * (itemRows + 1);
+			IntBuffer itemPostings = map(channel, pos, 4L * count).asIntBuffer();
+			
+			// the mappings stay valid after the channel is closed
+			file.close();
+			
+			ratings = new BufferRatings(users, items, values,
+					maxUserId, maxItemId, minRating, maxRating,
+					new RatingIndex(userOffsets, userPostings),
+					new RatingIndex(itemOffsets, itemPostings));
+			System.out.println("read file: " + filePath + " end. The total rating number is: " + count);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return ratings;
+	}
+	
+	/**
+	 * Map a read-only little endian section of the file
+	 * 
+	 * @param channel the channel of the file
+	 * @param pos the start of the section
+	 * @param size the size of the section in bytes
+	 * @return the mapped section
+	 */
+	private static ByteBuffer map(FileChannel channel, long pos, long size) throws IOException {
+		if(size > Integer.MAX_VALUE)
+			throw new IOException("section too large to map: " + size + " bytes");
+		if(pos + size > channel.size())
+			throw new IOException("truncated binary ratings file");
+		return channel.map(FileChannel.MapMode.READ_ONLY, pos, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
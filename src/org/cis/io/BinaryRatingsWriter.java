@@ -0,0 +1,132 @@
+package org.cis.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.cis.data.RatingIndex;
+import org.cis.data.Ratings;
+
+/**
+ * This class writes ratings data, together with its user and item indices,
+ * into the binary format read by BinaryRatingsReader
+ * 
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class BinaryRatingsWriter {
+	
+	/** the size of the write buffer */
+	private static final int BUFFER_SIZE = 1 << 20;
+	
+	/** the channel of the file being written */
+	private FileChannel channel;
+	/** the write buffer */
+	private ByteBuffer buffer;
+	
+	/**
+	 * Write ratings data into a binary file
+	 * 
+	 * @param ratings the ratings to write
+	 * @param filePath the path of the binary file
+	 */
+	public void write(Ratings ratings, String filePath) {
+		int count = ratings.getCount();
+		RatingIndex userIndex = ratings.getUserIndex();
+		RatingIndex itemIndex = ratings.getItemIndex();
+		
+		try {
+			RandomAccessFile file = new RandomAccessFile(filePath, "rw");
+			file.setLength(0);
+			channel = file.getChannel();
+			buffer  = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			
+			// header
+			putInt(BinaryRatingsReader.MAGIC);
+			putInt(BinaryRatingsReader.VERSION);
+			putInt(count);
+			putInt(ratings.totalUserNumber());
+			putInt(ratings.totalItemNumber());
+			putInt(ratings.getMinRating());
+			putInt(ratings.getMaxRating());
+			putInt(userIndex.rows());
+			putInt(itemIndex.rows());
+			for(int pos = 9 * 4; pos != BinaryRatingsReader.HEADER_SIZE; pos += 4)
+				putInt(0);
+			
+			// columns
+			for(int index = 0; index != count; ++index)
+				putInt(ratings.getUser(index));
+			for(int index = 0; index != count; ++index)
+				putInt(ratings.getItem(index));
+			for(int index = 0; index != count; ++index)
+				putByte((byte) ratings.getRating(index));
+			for(int pad = count; pad % 4 != 0; ++pad)
+				putByte((byte) 0);
+			
+			// indices
+			putIndex(userIndex);
+			putIndex(itemIndex);
+			
+			flush();
+			channel.force(false);
+			file.close();
+			System.out.println("write file: " + filePath + " end. The total rating number is: " + count);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			channel = null;
+			buffer  = null;
+		}
+	}
+	
+	/**
+	 * Write the offsets and the postings of an index
+	 * 
+	 * @param index the index to write
+	 */
+	private void putIndex(RatingIndex index) throws IOException {
+		int rows = index.rows();
+		for(int r = 0; r != rows; ++r)
+			putInt(index.start(r));
+		putInt(index.size());
+		
+		int size = index.size();
+		for(int pos = 0; pos != size; ++pos)
+			putInt(index.posting(pos));
+	}
+	
+	/**
+	 * Append an int to the file
+	 * 
+	 * @param value the int value
+	 */
+	private void putInt(int value) throws IOException {
+		if(buffer.remaining() < 4)
+			flush();
+		buffer.putInt(value);
+	}
+	
+	/**
+	 * Append a byte to the file
+	 * 
+	 * @param value the byte value
+	 */
+	private void putByte(byte value) throws IOException {
+		if(!buffer.hasRemaining())
+			flush();
+		buffer.put(value);
+	}
+	
+	/**
+	 * Write the buffered bytes to the channel
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
@@ -0,0 +1,221 @@
+package org.cis.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class implementing an allocation free parser of delimited text files
+ * whose leading fields are integers. The bytes are read into a large direct
+ * buffer and the integer fields of each line are decoded in place, no String
+ * is created per line.
+ * 
+ * The leading fields are separated by exactly one delimiter, or by "::" when
+ * the delimiter is ':' as in the MovieLens 1M and 10M files; each of them must
+ * be an integer in the int range, whose fractional part such as in "3.5" is
+ * ignored. Fields after the first fieldNumber ones are skipped, a trailing
+ * '\r' is dropped and blank lines are skipped; delimiters before the first
+ * field, such as the leading space of the Epinions trust lines, are skipped
+ * when the parser is built to do so. Any other line, such as one
+ * with an empty, non-numeric or overflowing field or with too few fields,
+ * fails the parse with a NumberFormatException, like Integer.parseInt() did
+ * 
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class DelimitedIntParser {
+	
+	/**
+	 * This interface receives the integer fields of each parsed line
+	 */
+	public interface RecordHandler {
+		
+		/**
+		 * Handle a parsed line
+		 * 
+		 * @param fields the integer fields of the line, the array is reused
+		 */
+		void handle(int[] fields);
+	}
+	
+	/** the default size of the read buffer */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 22;
+	
+	/** the delimiter byte between fields */
+	final byte delimiter;
+	/** the number of leading integer fields to decode */
+	final int fieldNumber;
+	/** whether delimiters before the first field are skipped */
+	final boolean skipLeading;
+	/** the reused fields of the current line */
+	final int[] fields;
+	
+	/**
+	 * Construct a parser
+	 * 
+	 * @param delimiter the delimiter byte, such as '\t', ' ', ':' or ','
+	 * @param fieldNumber the number of leading integer fields of each line
+	 */
+	public DelimitedIntParser(byte delimiter, int fieldNumber) {
+		this(delimiter, fieldNumber, false);
+	}
+	
+	/**
+	 * Construct a parser
+	 * 
+	 * @param delimiter the delimiter byte, such as '\t', ' ', ':' or ','
+	 * @param fieldNumber the number of leading integer fields of each line
+	 * @param skipLeading whether delimiters before the first field are skipped
+	 */
+	public DelimitedIntParser(byte delimiter, int fieldNumber, boolean skipLeading) {
+		this.delimiter   = delimiter;
+		this.fieldNumber = fieldNumber;
+		this.skipLeading = skipLeading;
+		this.fields      = new int[fieldNumber];
+	}
+	
+	/**
+	 * Parse a whole file
+	 * 
+	 * @param filePath the path of the file
+	 * @param handler the handler of the parsed lines
+	 * @return the number of handled lines
+	 * @throws NumberFormatException if a line is malformed
+	 */
+	public long parse(String filePath, RecordHandler handler) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		FileChannel channel = file.getChannel();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+		long lines = 0;
+		try {
+			while(channel.read(buffer) != -1){
+				buffer.flip();
+				lines += parse(buffer, false, handler);
+				// a full buffer without a complete line holds a single line longer than it
+				if(buffer.position() == 0 && buffer.limit() == buffer.capacity())
+					throw new IOException("line too long in file: " + filePath);
+				buffer.compact();
+			}
+			buffer.flip();
+			lines += parse(buffer, true, handler);
+		} finally {
+			file.close();
+		}
+		return lines;
+	}
+	
+	/**
+	 * Parse the complete lines between the position and the limit of the buffer.
+	 * On return the position is at the start of the first incomplete line
+	 * 
+	 * @param buffer the bytes to parse
+	 * @param endOfInput whether the last line may lack its line feed
+	 * @param handler the handler of the parsed lines
+	 * @return the number of handled lines
+	 * @throws NumberFormatException if a line is malformed
+	 */
+	public int parse(ByteBuffer buffer, boolean endOfInput, RecordHandler handler) {
+		int limit = buffer.limit();
+		int pos   = buffer.position();
+		int lines = 0;
+		
+		while(pos < limit){
+			// find the end of the line before decoding anything
+			int eol = pos;
+			while(eol < limit && buffer.get(eol) != '\n')
+				eol++;
+			if(eol == limit && !endOfInput)
+				break;
+			
+			if(decode(buffer, pos, eol)){
+				handler.handle(fields);
+				lines++;
+			}
+			pos = eol + 1;
+		}
+		
+		buffer.position(Math.min(pos, limit));
+		return lines;
+	}
+	
+	/**
+	 * Decode the integer fields of one line
+	 * 
+	 * @param buffer the bytes
+	 * @param pos the start of the line
+	 * @param eol the end of the line, exclusive
+	 * @return true if the line has the fields, false if it is blank
+	 * @throws NumberFormatException if the line is malformed
+	 */
+	boolean decode(ByteBuffer buffer, int pos, int eol) {
+		int start = pos;
+		if(eol > pos && buffer.get(eol - 1) == '\r')
+			eol--;
+		if(skipLeading){
+			while(pos < eol && buffer.get(pos) == delimiter)
+				pos++;
+		}
+		if(pos == eol)
+			return false;
+		
+		for(int field = 0; field != fieldNumber; ++field){
+			if(field != 0){
+				// exactly one separator between two fields
+				if(pos == eol || buffer.get(pos) != delimiter)
+					throw malformed(buffer, start, eol, "missing field " + (field + 1));
+				pos++;
+				if(delimiter == ':'){
+					if(pos == eol || buffer.get(pos) != ':')
+						throw malformed(buffer, start, eol, "expected \"::\" before field " + (field + 1));
+					pos++;
+				}
+			}
+			
+			boolean negative = false;
+			if(pos < eol && buffer.get(pos) == '-'){
+				negative = true;
+				pos++;
+			}
+			int digits = pos;
+			long value = 0;
+			long max = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+			byte b;
+			while(pos < eol && (b = buffer.get(pos)) >= '0' && b <= '9'){
+				value = value * 10 + (b - '0');
+				if(value > max)
+					throw malformed(buffer, start, eol, "field " + (field + 1) + " out of the int range");
+				pos++;
+			}
+			if(pos == digits)
+				throw malformed(buffer, start, eol, "field " + (field + 1) + " is not an integer");
+			
+			// the fractional part of a decimal number
+			if(pos < eol && buffer.get(pos) == '.'){
+				pos++;
+				while(pos < eol && (b = buffer.get(pos)) >= '0' && b <= '9')
+					pos++;
+			}
+			if(pos < eol && buffer.get(pos) != delimiter)
+				throw malformed(buffer, start, eol, "field " + (field + 1) + " is not an integer");
+			fields[field] = (int) (negative ? -value : value);
+		}
+		return true;
+	}
+	
+	/**
+	 * Build the error of a malformed line
+	 * 
+	 * @param buffer the bytes
+	 * @param start the start of the line
+	 * @param eol the end of the line, exclusive
+	 * @param reason what is wrong with the line
+	 * @return the error to throw
+	 */
+	static NumberFormatException malformed(ByteBuffer buffer, int start, int eol, String reason) {
+		StringBuilder line = new StringBuilder();
+		for(int pos = start; pos != eol && line.length() != 80; ++pos)
+			line.append((char) (buffer.get(pos) & 0xff));
+		return new NumberFormatException("malformed line, " + reason + ": \"" + line + "\"");
+	}
+}
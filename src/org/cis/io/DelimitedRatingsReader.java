@@ -0,0 +1,288 @@
+package org.cis.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cis.data.Deduplication;
+import org.cis.data.IdMapping;
+import org.cis.data.Ratings;
+
+/**
+ * This class reads ratings data from a delimited text file whose lines start
+ * with the user, the item and the rating, using the byte level DelimitedIntParser.
+ * 
+ * With more than one thread the file is split into newline aligned chunks which
+ * are memory mapped and parsed on a worker pool into per chunk RatingBuffers, then
+ * merged in file order, so the result is the same as the sequential read.
+ * 
+ * With a Deduplication the duplicate (user, item) pairs of a new data set are
+ * merged once the file is read
+ * 
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class DelimitedRatingsReader implements RatingsReader {
+	
+	/** the max size of a chunk, a chunk is mapped at once */
+	static final long MAX_CHUNK_SIZE = 1L << 30;
+	/** the number of chunks per thread, to balance the load */
+	static final int CHUNKS_PER_THREAD = 4;
+	
+	/** the delimiter byte between fields */
+	byte delimiter;
+	
+	/** the number of parsing threads */
+	int threadNumber = 1;
+	
+	/** the mapping of external user IDs, null to keep the IDs */
+	IdMapping userMapping;
+	/** the mapping of external item IDs, null to keep the IDs */
+	IdMapping itemMapping;
+	
+	/** the merging of duplicate pairs, null to keep them */
+	Deduplication deduplication;
+	
+	/**
+	 * Construct a reader which keeps the IDs of the file
+	 * 
+	 * @param delimiter the delimiter byte between fields
+	 */
+	public DelimitedRatingsReader(byte delimiter){
+		this(delimiter, null, null);
+	}
+	
+	/**
+	 * Construct a reader which remaps the IDs of the file to dense internal IDs,
+	 * share the mappings between the training and test files
+	 * 
+	 * @param delimiter the delimiter byte between fields
+	 * @param userMapping the mapping of user IDs
+	 * @param itemMapping the mapping of item IDs
+	 */
+	public DelimitedRatingsReader(byte delimiter, IdMapping userMapping, IdMapping itemMapping){
+		this.delimiter   = delimiter;
+		this.userMapping = userMapping;
+		this.itemMapping = itemMapping;
+	}
+	
+	/**
+	 * @param threadNumber the number of parsing threads, 1 reads sequentially
+	 */
+	public void setThreadNumber(int threadNumber) {
+		this.threadNumber = Math.max(threadNumber, 1);
+	}
+	
+	/**
+	 * @param deduplication the merging of duplicate pairs, null to keep them
+	 */
+	public void setDeduplication(Deduplication deduplication) {
+		this.deduplication = deduplication;
+	}
+	
+	/**
+	 * Read ratings data from text file
+	 */
+	public Ratings read(String filePath) {
+		Ratings ratings = read(filePath, null);
+		if(deduplication != null){
+			long start = System.nanoTime();
+			ratings = deduplication.apply(ratings);
+			System.out.println("merged " + deduplication.getMergedNumber() + " duplicate ratings"
+					+ String.format(" (%.1f ms)", (System.nanoTime() - start) / 1e6));
+		}
+		return ratings;
+	}
+	
+	/**
+	 * Read ratings data from text file into the given data set, such as an
+	 * OffHeapRatings, the ratings are appended to those it already holds.
+	 * The duplicates are kept
+	 * 
+	 * @param filePath the path of the file
+	 * @param target the data set to fill, null for a new Ratings
+	 * @return the filled data set
+	 * @throws IllegalStateException if a parallel read fails, the target is left unchanged
+	 */
+	public Ratings read(String filePath, Ratings target) {
+		if(threadNumber > 1){
+			try {
+				return readParallel(filePath, target);
+			} catch (IOException e) {
+				// a failed chunk leaves no partial data set behind
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+		
+		final Ratings ratings = (target != null) ? target : new Ratings();
+		ratings.setUserMapping(userMapping);
+		ratings.setItemMapping(itemMapping);
+		
+		try {
+			long start = System.nanoTime();
+			DelimitedIntParser parser = new DelimitedIntParser(delimiter, 3);
+			long count = parser.parse(filePath, new DelimitedIntParser.RecordHandler() {
+				public void handle(int[] fields) {
+					addRating(ratings, fields[0], fields[1], fields[2]);
+				}
+			});
+			ratings.trimToSize();
+			report(filePath, count, System.nanoTime() - start);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return ratings;
+	}
+	
+	/**
+	 * Read ratings data from text file with a pool of parsing threads
+	 * 
+	 * @param filePath the path of the file
+	 * @param target the data set to fill, null for a new Ratings
+	 * @return the ratings in file order
+	 * @throws IOException if the file cannot be read
+	 * @throws NumberFormatException if a line is malformed
+	 */
+	Ratings readParallel(String filePath, Ratings target) throws IOException {
+		Ratings ratings = (target != null) ? target : new Ratings();
+		ratings.setUserMapping(userMapping);
+		ratings.setItemMapping(itemMapping);
+		
+		long start = System.nanoTime();
+		ArrayList<RatingBuffer> results;
+		long count = 0;
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		ExecutorService pool = Executors.newFixedThreadPool(threadNumber);
+		try {
+			FileChannel channel = file.getChannel();
+			
+			// split the file at line boundaries
+			long size = channel.size();
+			int chunkNumber = (int) Math.max(threadNumber * CHUNKS_PER_THREAD, size / MAX_CHUNK_SIZE + 1);
+			long[] bounds = new long[chunkNumber + 1];
+			bounds[chunkNumber] = size;
+			for(int k = 1; k != chunkNumber; ++k)
+				bounds[k] = alignToLine(channel, Math.max(bounds[k - 1], size / chunkNumber * k));
+			
+			// parse the chunks into per chunk primitive buffers
+			ArrayList<Future<RatingBuffer>> parts = new ArrayList<Future<RatingBuffer>>(chunkNumber);
+			for(int k = 0; k != chunkNumber; ++k){
+				final ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, bounds[k], bounds[k + 1] - bounds[k]);
+				parts.add(pool.submit(new Callable<RatingBuffer>() {
+					public RatingBuffer call() {
+						final RatingBuffer part = new RatingBuffer(chunk.remaining() / 8 + 1);
+						new DelimitedIntParser(delimiter, 3).parse(chunk, true, new DelimitedIntParser.RecordHandler() {
+							public void handle(int[] fields) {
+								part.add(fields[0], fields[1], fields[2]);
+							}
+						});
+						return part;
+					}
+				}));
+			}
+			
+			results = new ArrayList<RatingBuffer>(chunkNumber);
+			for(Future<RatingBuffer> part : parts){
+				results.add(part.get());
+				count += results.get(results.size() - 1).count;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while reading file: " + filePath, e);
+		} catch (ExecutionException e) {
+			// a malformed line fails the read as in the sequential parse
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IOException("failed to read file: " + filePath, e.getCause());
+		} finally {
+			pool.shutdownNow();
+			file.close();
+		}
+		
+		if(target == null){
+			if(count > Integer.MAX_VALUE)
+				throw new IOException("too many ratings in file: " + count);
+			ratings = new Ratings((int) count);
+			ratings.setUserMapping(userMapping);
+			ratings.setItemMapping(itemMapping);
+		}
+		// merge in file order; the IDs are remapped here so that they are assigned
+		// in the same order as in a sequential read, without a mapping the columns
+		// of each part are copied at once
+		for(int k = 0; k != results.size(); ++k){
+			RatingBuffer part = results.get(k);
+			results.set(k, null);
+			if(userMapping == null && itemMapping == null){
+				ratings.append(part.users, part.items, part.values, part.count);
+			} else {
+				for(int index = 0; index != part.count; ++index)
+					addRating(ratings, part.users[index], part.items[index], part.values[index]);
+			}
+		}
+		report(filePath, count, System.nanoTime() - start);
+		return ratings;
+	}
+	
+	/**
+	 * Find the start of the first line at or after the given position
+	 * 
+	 * @param channel the channel of the file
+	 * @param pos the position
+	 * @return the position after the line feed ending the line containing pos - 1
+	 */
+	static long alignToLine(FileChannel channel, long pos) throws IOException {
+		if(pos == 0)
+			return 0;
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long size = channel.size();
+		pos--;
+		while(pos < size){
+			buffer.clear();
+			int read = channel.read(buffer, pos);
+			if(read <= 0)
+				break;
+			for(int i = 0; i != read; ++i){
+				if(buffer.get(i) == '\n')
+					return pos + i + 1;
+			}
+			pos += read;
+		}
+		return size;
+	}
+	
+	/**
+	 * Add a rating read from the file, remapping its IDs if needed
+	 * 
+	 * @param ratings the ratings being read
+	 * @param u the external user ID
+	 * @param i the external item ID
+	 * @param r the rating value
+	 */
+	void addRating(Ratings ratings, int u, int i, int r){
+		if(userMapping != null)
+			u = userMapping.toInternal(u);
+		if(itemMapping != null)
+			i = itemMapping.toInternal(i);
+		ratings.addRating(u, i, r);
+	}
+	
+	/**
+	 * Print the number of read lines and the ingest throughput
+	 * 
+	 * @param filePath the path of the file
+	 * @param count the number of lines
+	 * @param nanos the elapsed time in nanoseconds
+	 */
+	static void report(String filePath, long count, long nanos){
+		double seconds = Math.max(nanos, 1) / 1e9;
+		System.out.println("read file: " + filePath + " end. The total line number is: " + count
+				+ String.format(" (%.1f ms, %.2f M lines/s)", seconds * 1e3, count / seconds / 1e6));
+	}
+}
@@ -3,7 +3,10 @@ package org.cis.io;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 
+import org.cis.data.IdMapping;
+import org.cis.matrix.ImmutableSparseBooleanMatrix;
 import org.cis.matrix.SparseBooleanMatrix;
 
 /**
@@ -14,6 +17,25 @@ import org.cis.matrix.SparseBooleanMatrix;
  */
 public class EpinionsSparseBooleanMatrixReader implements
 		SparseBooleanMatrixReader {
+	
+	/** the mapping of external user IDs, null to keep the IDs */
+	IdMapping userMapping;
+	
+	/**
+	 * Construct a reader which keeps the user IDs of the file
+	 */
+	public EpinionsSparseBooleanMatrixReader(){
+	}
+	
+	/**
+	 * Construct a reader which remaps the user IDs of the file with the
+	 * mapping used for the ratings, so that both data sets share the IDs
+	 * 
+	 * @param userMapping the mapping of user IDs
+	 */
+	public EpinionsSparseBooleanMatrixReader(IdMapping userMapping){
+		this.userMapping = userMapping;
+	}
 
 	/**
 	 * Read the epinions social network data from text file
@@ -33,6 +55,10 @@ public class EpinionsSparseBooleanMatrixReader implements
 				words = line.split(" ");
 				u = Integer.parseInt(words[0]);
 				i = Integer.parseInt(words[1]);
+				if(userMapping != null){
+					u = userMapping.toInternal(u);
+					i = userMapping.toInternal(i);
+				}
 				matrix.addEntry(u, i);
 				count++;
 			}
@@ -43,5 +69,46 @@ public class EpinionsSparseBooleanMatrixReader implements
 		}
 		return matrix;
 	}
+	
+	/**
+	 * Read the epinions social network data from text file straight into a
+	 * frozen compressed matrix, the lines are parsed without creating Strings.
+	 * As in read(), the space which starts each line of the file is skipped
+	 * 
+	 * @param filePath the path of the text file
+	 * @param dim1 the first dimension of the matrix
+	 * @param dim2 the second dimension of the matrix
+	 * @return the matrix
+	 */
+	public ImmutableSparseBooleanMatrix readImmutable(String filePath, int dim1, int dim2) {
+		final int[][] entries = { new int[1 << 16], new int[1 << 16] };
+		final int[] count = { 0 };
+		
+		try {
+			long start = System.nanoTime();
+			DelimitedIntParser parser = new DelimitedIntParser((byte) ' ', 2, true);
+			long lines = parser.parse(filePath, new DelimitedIntParser.RecordHandler() {
+				public void handle(int[] fields) {
+					int u = fields[0];
+					int i = fields[1];
+					if(userMapping != null){
+						u = userMapping.toInternal(u);
+						i = userMapping.toInternal(i);
+					}
+					int k = count[0]++;
+					if(k == entries[0].length){
+						entries[0] = Arrays.copyOf(entries[0], k * 2);
+						entries[1] = Arrays.copyOf(entries[1], k * 2);
+					}
+					entries[0][k] = u;
+					entries[1][k] = i;
+				}
+			});
+			DelimitedRatingsReader.report(filePath, lines, System.nanoTime() - start);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return ImmutableSparseBooleanMatrix.build(dim1, dim2, entries[0], entries[1], count[0]);
+	}
 
 }
@@ -1,10 +1,6 @@
 package org.cis.io;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-
-import org.cis.data.Ratings;
+import org.cis.data.IdMapping;
 
 /**
  * This class reads the movielens ratings data
@@ -12,35 +8,24 @@ import org.cis.data.Ratings;
  * @author Zhang Si (zhangsi.cs@gmail.com)
  *
  */
-public class MovielensRatingsReader implements RatingsReader{
-
+public class MovielensRatingsReader extends DelimitedRatingsReader{
+	
+	/**
+	 * Construct a reader which keeps the IDs of the file
+	 */
+	public MovielensRatingsReader(){
+		super((byte) '\t');
+	}
+	
 	/**
-	 * Read movielens ratings data from text file
+	 * Construct a reader which remaps the IDs of the file to dense internal IDs,
+	 * share the mappings between the training and test files
+	 * 
+	 * @param userMapping the mapping of user IDs
+	 * @param itemMapping the mapping of item IDs
 	 */
-	public Ratings read(String filePath) {
-		Ratings ratings = new Ratings();
-		
-		try {
-			BufferedReader br = new BufferedReader(new FileReader(filePath));
-			String line;
-			String[] words;
-			int u,i,r;
-			
-			int count = 0;
-			while( (line = br.readLine()) != null){
-				words = line.split("\t");
-				u = Integer.parseInt(words[0]);
-				i = Integer.parseInt(words[1]);
-				r = Integer.parseInt(words[2]);
-				ratings.addRating(u, i, r);
-				count++;
-			}
-			System.out.println("read file: " + filePath + " end. The total line number is: " + count);
-			br.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		return ratings;
+	public MovielensRatingsReader(IdMapping userMapping, IdMapping itemMapping){
+		super((byte) '\t', userMapping, itemMapping);
 	}
 
 }
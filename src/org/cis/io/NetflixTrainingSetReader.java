@@ -0,0 +1,195 @@
+package org.cis.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cis.data.IdMapping;
+import org.cis.data.Ratings;
+
+/**
+ * This class reads the training_set directory of the Netflix Prize data, made of
+ * one mv_XXXXXXX.txt file per movie with a "movieId:" header followed by
+ * "userId,rating,date" lines.
+ *
+ * The files are parsed concurrently, one task per file on a bounded pool, and
+ * merged in file name order. The sparse user IDs are remapped to dense internal
+ * IDs during the merge, the movie IDs are already dense and are kept
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class NetflixTrainingSetReader implements RatingsReader {
+
+	/** the number of distinct users in the Netflix Prize data */
+	static final int NETFLIX_USER_NUMBER = 480189;
+
+	/** the mapping of external user IDs */
+	IdMapping userMapping;
+	/** the number of parsing threads */
+	int threadNumber;
+
+	/**
+	 * Construct a reader with a new user mapping
+	 */
+	public NetflixTrainingSetReader(){
+		this(new IdMapping(NETFLIX_USER_NUMBER));
+	}
+
+	/**
+	 * Construct a reader with the given user mapping, share it with the
+	 * reader of the probe or qualifying data
+	 *
+	 * @param userMapping the mapping of user IDs
+	 */
+	public NetflixTrainingSetReader(IdMapping userMapping){
+		this.userMapping  = userMapping;
+		this.threadNumber = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @param threadNumber the number of parsing threads
+	 */
+	public void setThreadNumber(int threadNumber) {
+		this.threadNumber = Math.max(threadNumber, 1);
+	}
+
+	/**
+	 * @return the mapping of user IDs
+	 */
+	public IdMapping getUserMapping() {
+		return userMapping;
+	}
+
+	/**
+	 * Read the ratings of all the movie files in the training_set directory
+	 */
+	public Ratings read(String dirPath) {
+		Ratings ratings = null;
+
+		File[] files = new File(dirPath).listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().startsWith("mv_") && file.getName().endsWith(".txt");
+			}
+		});
+		if(files == null){
+			System.out.println("not a directory: " + dirPath);
+			return null;
+		}
+		Arrays.sort(files);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threadNumber);
+		try {
+			long start = System.nanoTime();
+			ArrayList<Future<RatingBuffer>> parts = new ArrayList<Future<RatingBuffer>>(files.length);
+			for(final File file : files){
+				parts.add(pool.submit(new Callable<RatingBuffer>() {
+					public RatingBuffer call() throws IOException {
+						return readMovie(file);
+					}
+				}));
+			}
+
+			ArrayList<RatingBuffer> results = new ArrayList<RatingBuffer>(files.length);
+			long count = 0;
+			for(Future<RatingBuffer> part : parts){
+				results.add(part.get());
+				count += results.get(results.size() - 1).count;
+			}
+			if(count > Integer.MAX_VALUE)
+				throw new IOException("too many ratings in directory: " + count);
+
+			// merge in file name order, so the user IDs are assigned deterministically
+			ratings = new Ratings((int) count);
+			ratings.setUserMapping(userMapping);
+			for(int k = 0; k != results.size(); ++k){
+				RatingBuffer part = results.get(k);
+				results.set(k, null);
+				for(int index = 0; index != part.count; ++index)
+					ratings.addRating(userMapping.toInternal(part.users[index]), part.items[index], part.values[index]);
+			}
+			DelimitedRatingsReader.report(dirPath, count, System.nanoTime() - start);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			// a malformed line fails the read as in the sequential parse
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			e.getCause().printStackTrace();
+		} finally {
+			pool.shutdownNow();
+		}
+		return ratings;
+	}
+
+	/**
+	 * Read the training_set directory and cache it in the binary format,
+	 * the user mapping is saved next to it with the ".users" suffix
+	 *
+	 * @param dirPath the path of the training_set directory
+	 * @param binaryPath the path of the binary ratings file
+	 * @return the ratings read from the directory
+	 */
+	public Ratings readAndCache(String dirPath, String binaryPath) {
+		Ratings ratings = read(dirPath);
+		if(ratings != null){
+			new BinaryRatingsWriter().write(ratings, binaryPath);
+			userMapping.save(binaryPath + ".users");
+		}
+		return ratings;
+	}
+
+	/**
+	 * Read the ratings of one movie file, the user IDs are kept external
+	 *
+	 * @param file the movie file
+	 * @return the ratings of the movie
+	 */
+	static RatingBuffer readMovie(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		ByteBuffer buffer;
+		try {
+			FileChannel channel = raf.getChannel();
+			buffer = ByteBuffer.allocate((int) channel.size());
+			while(buffer.hasRemaining() && channel.read(buffer) != -1)
+				;
+			buffer.flip();
+		} finally {
+			raf.close();
+		}
+
+		// the "movieId:" header
+		int movie_id = 0;
+		byte b;
+		while(buffer.hasRemaining() && (b = buffer.get()) != ':'){
+			if(b >= '0' && b <= '9')
+				movie_id = movie_id * 10 + (b - '0');
+		}
+		while(buffer.hasRemaining() && buffer.get() != '\n')
+			;
+		if(movie_id == 0)
+			throw new IOException("missing movie header in file: " + file);
+
+		final int item_id = movie_id;
+		final RatingBuffer part = new RatingBuffer(buffer.remaining() / 16 + 1);
+		new DelimitedIntParser((byte) ',', 2).parse(buffer, true, new DelimitedIntParser.RecordHandler() {
+			public void handle(int[] fields) {
+				part.add(fields[0], item_id, fields[1]);
+			}
+		});
+		return part;
+	}
+}
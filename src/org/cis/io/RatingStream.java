@@ -0,0 +1,193 @@
+package org.cis.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class streams the (user, item, rating) triples of a delimited text file
+ * in fixed size batches without materializing a Ratings, so one pass consumers
+ * such as the averages and the evaluators run in constant memory.
+ *
+ * A stream covers a byte range of the file and can be split into newline
+ * aligned sub streams which are consumed in parallel
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class RatingStream {
+
+	/**
+	 * This class holds a batch of ratings in primitive arrays, the arrays are
+	 * reused from one batch to the next
+	 */
+	public static class Batch {
+		/** the user IDs of the batch */
+		public final int[] users;
+		/** the item IDs of the batch */
+		public final int[] items;
+		/** the rating values of the batch */
+		public final int[] values;
+		/** the number of ratings in the batch */
+		public int size;
+
+		/**
+		 * Construct an empty batch
+		 *
+		 * @param capacity the max number of ratings in the batch
+		 */
+		Batch(int capacity) {
+			users  = new int[capacity];
+			items  = new int[capacity];
+			values = new int[capacity];
+		}
+	}
+
+	/**
+	 * This interface receives the batches of a stream
+	 */
+	public interface BatchHandler {
+
+		/**
+		 * Handle a batch of ratings
+		 *
+		 * @param batch the batch, only valid during the call
+		 */
+		void handle(Batch batch);
+	}
+
+	/** the default number of ratings in a batch */
+	public static final int DEFAULT_BATCH_SIZE = 4096;
+	/** the size of the read buffer */
+	static final int BUFFER_SIZE = 1 << 20;
+
+	/** the path of the file */
+	final String filePath;
+	/** the delimiter byte between fields */
+	final byte delimiter;
+	/** the first byte of the stream, at a line start */
+	final long start;
+	/** the byte after the stream, at a line start or the file end */
+	final long end;
+
+	/**
+	 * Construct a stream over a whole file
+	 *
+	 * @param filePath the path of the file
+	 * @param delimiter the delimiter byte between fields
+	 */
+	public RatingStream(String filePath, byte delimiter) {
+		this(filePath, delimiter, 0, new File(filePath).length());
+	}
+
+	/**
+	 * Construct a stream over a line aligned byte range of a file
+	 *
+	 * @param filePath the path of the file
+	 * @param delimiter the delimiter byte between fields
+	 * @param start the first byte of the range
+	 * @param end the byte after the range
+	 */
+	RatingStream(String filePath, byte delimiter, long start, long end) {
+		this.filePath  = filePath;
+		this.delimiter = delimiter;
+		this.start     = start;
+		this.end       = end;
+	}
+
+	/**
+	 * Split the stream into newline aligned sub streams
+	 *
+	 * @param n the number of sub streams
+	 * @return the sub streams, which together cover this stream in order
+	 */
+	public RatingStream[] split(int n) throws IOException {
+		n = Math.max(n, 1);
+		RatingStream[] streams = new RatingStream[n];
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long from = start;
+			for(int k = 0; k != n; ++k){
+				long to = end;
+				if(k != n - 1)
+					to = Math.min(end, DelimitedRatingsReader.alignToLine(channel,
+							Math.max(from, start + (end - start) / n * (k + 1))));
+				streams[k] = new RatingStream(filePath, delimiter, from, to);
+				from = to;
+			}
+		} finally {
+			file.close();
+		}
+		return streams;
+	}
+
+	/**
+	 * Read the stream in batches of the default size
+	 *
+	 * @param handler the handler of the batches
+	 * @return the number of ratings read
+	 */
+	public long forEachBatch(BatchHandler handler) throws IOException {
+		return forEachBatch(DEFAULT_BATCH_SIZE, handler);
+	}
+
+	/**
+	 * Read the stream in batches
+	 *
+	 * @param batchSize the max number of ratings in a batch
+	 * @param handler the handler of the batches
+	 * @return the number of ratings read
+	 */
+	public long forEachBatch(int batchSize, final BatchHandler handler) throws IOException {
+		final Batch batch = new Batch(Math.max(batchSize, 1));
+		final long[] count = new long[1];
+		DelimitedIntParser.RecordHandler collector = new DelimitedIntParser.RecordHandler() {
+			public void handle(int[] fields) {
+				int k = batch.size++;
+				batch.users[k]  = fields[0];
+				batch.items[k]  = fields[1];
+				batch.values[k] = fields[2];
+				if(batch.size == batch.users.length){
+					handler.handle(batch);
+					count[0] += batch.size;
+					batch.size = 0;
+				}
+			}
+		};
+
+		DelimitedIntParser parser = new DelimitedIntParser(delimiter, 3);
+		RandomAccessFile file = new RandomAccessFile(filePath, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			long pos = start;
+			while(pos < end){
+				// never read past the end of the range
+				if(end - pos < buffer.remaining())
+					buffer.limit(buffer.position() + (int) (end - pos));
+				int read = channel.read(buffer, pos);
+				if(read <= 0)
+					break;
+				pos += read;
+
+				buffer.flip();
+				parser.parse(buffer, pos >= end, collector);
+				if(buffer.position() == 0 && buffer.limit() == buffer.capacity())
+					throw new IOException("line too long in file: " + filePath);
+				buffer.compact();
+			}
+		} finally {
+			file.close();
+		}
+
+		if(batch.size != 0){
+			handler.handle(batch);
+			count[0] += batch.size;
+			batch.size = 0;
+		}
+		return count[0];
+	}
+}
@@ -0,0 +1,66 @@
+package org.cis.io.test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.cis.data.Ratings;
+import org.cis.io.DelimitedIntParser;
+import org.cis.io.DelimitedRatingsReader;
+
+/**
+ * This class tests that the parser reads the last line of a file which does
+ * not end with a line feed, whether the file fits into one buffer or its last
+ * line crosses a refill of the buffer
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class DelimitedIntParserTest {
+	public static void main(String args[]) throws IOException{
+
+
+		//command: java org.cis.io.test.DelimitedIntParserTest
+
+
+		// a one line file
+		check(1);
+
+		// 7 byte lines, the unterminated last one crosses the end of the first buffer
+		check(DelimitedIntParser.DEFAULT_BUFFER_SIZE / 7 + 1);
+
+		System.out.println("ok");
+	}
+
+	/**
+	 * Check that all the lines of a file of "10\t2\t3" lines without a final
+	 * line feed are read by the parser and by the ratings reader
+	 *
+	 * @param lines the number of lines of the file
+	 */
+	static void check(int lines) throws IOException {
+		File file = File.createTempFile("ratings", ".txt");
+		file.deleteOnExit();
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+		for(int k = 0; k != lines; ++k){
+			if(k != 0)
+				writer.write('\n');
+			writer.write("10\t2\t3");
+		}
+		writer.close();
+
+		final long[] sum = { 0 };
+		long parsed = new DelimitedIntParser((byte) '\t', 3).parse(file.getPath(), new DelimitedIntParser.RecordHandler() {
+			public void handle(int[] fields) {
+				sum[0] += fields[0] + fields[1] + fields[2];
+			}
+		});
+		if(parsed != lines || sum[0] != 15L * lines)
+			throw new IllegalStateException("parsed " + parsed + " of " + lines + " lines");
+
+		Ratings ratings = new DelimitedRatingsReader((byte) '\t').read(file.getPath());
+		if(ratings.getCount() != lines)
+			throw new IllegalStateException("read " + ratings.getCount() + " of " + lines + " ratings");
+	}
+}
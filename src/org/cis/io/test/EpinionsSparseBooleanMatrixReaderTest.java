@@ -0,0 +1,64 @@
+package org.cis.io.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.cis.io.EpinionsSparseBooleanMatrixReader;
+import org.cis.matrix.ImmutableSparseBooleanMatrix;
+import org.cis.matrix.SparseBooleanMatrix;
+
+/**
+ * This class tests that the two paths of the Epinions trust reader read the
+ * same matrix from a file in the real format, whose lines are " u v t"
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class EpinionsSparseBooleanMatrixReaderTest {
+	public static void main(String args[]) throws IOException{
+
+
+		//command: java org.cis.io.test.EpinionsSparseBooleanMatrixReaderTest ../data/epinions/trust_data.txt 49289
+
+
+		String socialFile;
+		int userNumber;
+		if(args.length == 2){
+			socialFile = args[0];
+			userNumber = Integer.parseInt(args[1]);
+		} else if(args.length == 0) {
+			// a small graph in the format of the Epinions trust file
+			File file = File.createTempFile("trust", ".txt");
+			file.deleteOnExit();
+			FileWriter writer = new FileWriter(file);
+			writer.write(" 1 2 1\n 1 3 1\n 22 1 1\n 3 22 1\n");
+			writer.close();
+			socialFile = file.getPath();
+			userNumber = 22;
+		} else {
+			System.out.println("Useage:");
+			System.out.println("1, Trust data path");
+			System.out.println("2, The max user ID");
+			return;
+		}
+
+		EpinionsSparseBooleanMatrixReader reader = new EpinionsSparseBooleanMatrixReader();
+		SparseBooleanMatrix expected = reader.read(socialFile, userNumber+1, userNumber+1);
+		ImmutableSparseBooleanMatrix actual = reader.readImmutable(socialFile, userNumber+1, userNumber+1);
+
+		if(actual.getNonEmpty() != expected.getNonEmpty())
+			throw new IllegalStateException("expected " + expected.getNonEmpty() + " entries, read " + actual.getNonEmpty());
+		for(int u = 0; u != userNumber+1; ++u){
+			ArrayList<Integer> row = expected.getRow(u);
+			if(actual.getNumEntriesByRow(u) != row.size())
+				throw new IllegalStateException("row " + u + " differs");
+			for(int v : row){
+				if(!actual.getEntry(u, v))
+					throw new IllegalStateException("missing entry (" + u + ", " + v + ")");
+			}
+		}
+		System.out.println("ok, " + actual.getNonEmpty() + " entries");
+	}
+}
@@ -17,4 +17,20 @@ public interface BooleanMatrix {
 	int getNumEntriesByRow( int r);
 	
 	int getNumEntriesByColumn( int c);
+	
+	IntView getRowView( int r);
+	
+	IntView getColumnView( int c);
+	
+	void forEachInRow( int r, IntConsumer consumer);
+	
+	void forEachInColumn( int c, IntConsumer consumer);
+	
+	int fillRow( int r, int[] dst);
+	
+	int fillColumn( int c, int[] dst);
+	
+	int fillNonEmptyRowIds( int[] dst);
+	
+	int fillNonEmptyColumnIds( int[] dst);
 }
@@ -0,0 +1,665 @@
+package org.cis.matrix;
+
+import java.util.Arrays;
+
+/**
+ * This class implementing an immutable set of non-negative ints, such as the
+ * neighbors of a user, in one of two forms chosen by its size:
+ *
+ * - a sorted int array, for the sets smaller than BITMAP_THRESHOLD. The array
+ *   may be a range of the column indices of a compressed matrix, it is not copied
+ * - a Roaring style compressed bitmap for the larger sets: the values are
+ *   grouped by their high 16 bits into containers, a container holds the low
+ *   16 bits either in a sorted char array, up to ARRAY_CONTAINER_MAX values,
+ *   or in a bitmap of 1024 longs
+ *
+ * and(), or() and andCardinality() work container by container between two
+ * bitmaps, with word wise AND / OR and bit counts between bitmap containers
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public final class CompressedRow {
+
+	/** the size from which a set is stored as a compressed bitmap */
+	public static final int BITMAP_THRESHOLD = 4096;
+	/** the max number of values of an array container */
+	static final int ARRAY_CONTAINER_MAX = 4096;
+	/** the number of longs of a bitmap container */
+	static final int BITMAP_WORDS = 1 << 10;
+
+	/** the empty set */
+	public static final CompressedRow EMPTY = new CompressedRow(new int[0], 0, 0);
+
+	/** the sorted values, null for a compressed bitmap */
+	final int[] array;
+	/** the first position of the values in array */
+	final int offset;
+	/** the number of values */
+	final int size;
+
+	/** the high 16 bits of each container, sorted */
+	final char[] keys;
+	/** the containers, char[] or long[] */
+	final Object[] containers;
+	/** the number of values of each container */
+	final int[] counts;
+
+	/**
+	 * Construct a set over a range of a sorted array
+	 *
+	 * @param array the sorted values
+	 * @param offset the first position of the values
+	 * @param size the number of values
+	 */
+	private CompressedRow(int[] array, int offset, int size) {
+		this.array = array;
+		this.offset = offset;
+		this.size = size;
+		this.keys = null;
+		this.containers = null;
+		this.counts = null;
+	}
+
+	/**
+	 * Construct a compressed bitmap
+	 *
+	 * @param keys the high 16 bits of each container
+	 * @param containers the containers
+	 * @param counts the number of values of each container
+	 * @param containerNumber the number of containers
+	 */
+	private CompressedRow(char[] keys, Object[] containers, int[] counts, int containerNumber) {
+		int total = 0;
+		for(int k = 0; k != containerNumber; ++k)
+			total += counts[k];
+		this.array = null;
+		this.offset = 0;
+		this.size = total;
+		this.keys = (keys.length == containerNumber) ? keys : Arrays.copyOf(keys, containerNumber);
+		this.containers = (containers.length == containerNumber) ? containers : Arrays.copyOf(containers, containerNumber);
+		this.counts = (counts.length == containerNumber) ? counts : Arrays.copyOf(counts, containerNumber);
+	}
+
+	/**
+	 * Get the set of a range of sorted distinct non-negative values, the
+	 * range is shared when the set is small and compressed otherwise
+	 *
+	 * @param sorted the sorted values
+	 * @param offset the first position of the values
+	 * @param size the number of values
+	 * @return the set
+	 */
+	public static CompressedRow of(int[] sorted, int offset, int size) {
+		if(size == 0)
+			return EMPTY;
+		if(size < BITMAP_THRESHOLD)
+			return new CompressedRow(sorted, offset, size);
+		return bitmapOf(sorted, offset, size);
+	}
+
+	/**
+	 * Get the compressed bitmap of a range of sorted distinct non-negative values
+	 *
+	 * @param sorted the sorted values
+	 * @param offset the first position of the values
+	 * @param size the number of values
+	 * @return the compressed bitmap
+	 */
+	static CompressedRow bitmapOf(int[] sorted, int offset, int size) {
+		int containerNumber = 0;
+		for(int pos = offset; pos != offset + size; ++pos){
+			if(pos == offset || (sorted[pos] >>> 16) != (sorted[pos - 1] >>> 16))
+				containerNumber++;
+		}
+		char[] keys = new char[containerNumber];
+		Object[] containers = new Object[containerNumber];
+		int[] counts = new int[containerNumber];
+
+		int k = 0;
+		for(int start = offset; start != offset + size; ++k){
+			int key = sorted[start] >>> 16;
+			int end = start + 1;
+			while(end != offset + size && (sorted[end] >>> 16) == key)
+				end++;
+			keys[k] = (char) key;
+			counts[k] = end - start;
+			if(end - start <= ARRAY_CONTAINER_MAX){
+				char[] values = new char[end - start];
+				for(int pos = start; pos != end; ++pos)
+					values[pos - start] = (char) sorted[pos];
+				containers[k] = values;
+			} else {
+				long[] words = new long[BITMAP_WORDS];
+				for(int pos = start; pos != end; ++pos)
+					words[(sorted[pos] & 0xFFFF) >>> 6] |= 1L << sorted[pos];
+				containers[k] = words;
+			}
+			start = end;
+		}
+		return new CompressedRow(keys, containers, counts, containerNumber);
+	}
+
+	/**
+	 * @return true if the set is stored as a compressed bitmap
+	 */
+	public boolean isBitmap() {
+		return array == null;
+	}
+
+	/**
+	 * @return the number of values
+	 */
+	public int cardinality() {
+		return size;
+	}
+
+	/**
+	 * @param value a value
+	 * @return true if the set contains the value
+	 */
+	public boolean contains(int value) {
+		if(value < 0)
+			return false;
+		if(array != null)
+			return Arrays.binarySearch(array, offset, offset + size, value) >= 0;
+		int k = Arrays.binarySearch(keys, (char) (value >>> 16));
+		if(k < 0)
+			return false;
+		return containerContains(containers[k], (char) value);
+	}
+
+	/**
+	 * Pass every value to a consumer, in ascending order
+	 *
+	 * @param consumer the consumer
+	 */
+	public void forEach(IntConsumer consumer) {
+		if(array != null){
+			for(int pos = offset; pos != offset + size; ++pos)
+				consumer.accept(array[pos]);
+			return;
+		}
+		for(int k = 0; k != keys.length; ++k){
+			int high = keys[k] << 16;
+			if(containers[k] instanceof char[]){
+				for(char low : (char[]) containers[k])
+					consumer.accept(high | low);
+			} else {
+				long[] words = (long[]) containers[k];
+				for(int w = 0; w != BITMAP_WORDS; ++w){
+					for(long word = words[w]; word != 0; word &= word - 1)
+						consumer.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy the values into an array, in ascending order
+	 *
+	 * @param dst the destination array, at least cardinality() long
+	 * @return the number of copied values
+	 */
+	public int fill(int[] dst) {
+		if(array != null){
+			System.arraycopy(array, offset, dst, 0, size);
+			return size;
+		}
+		int n = 0;
+		for(int k = 0; k != keys.length; ++k)
+			n = containerFill(containers[k], keys[k] << 16, dst, n);
+		return n;
+	}
+
+	/**
+	 * Set the bits of the values in a dense bitmap, the bitmap containers
+	 * are merged word by word
+	 *
+	 * @param words the dense bitmap, covering every container of the set
+	 */
+	void orInto(long[] words) {
+		if(array != null){
+			for(int pos = offset; pos != offset + size; ++pos)
+				words[array[pos] >>> 6] |= 1L << array[pos];
+			return;
+		}
+		for(int k = 0; k != keys.length; ++k){
+			int base = keys[k] * BITMAP_WORDS;
+			if(containers[k] instanceof char[]){
+				for(char low : (char[]) containers[k])
+					words[base + (low >>> 6)] |= 1L << low;
+			} else {
+				long[] container = (long[]) containers[k];
+				for(int w = 0; w != BITMAP_WORDS; ++w)
+					words[base + w] |= container[w];
+			}
+		}
+	}
+
+	/**
+	 * Get the set of the bits of a dense bitmap
+	 *
+	 * @param words the dense bitmap
+	 * @return the set
+	 */
+	static CompressedRow fromWords(long[] words) {
+		int n = 0;
+		for(long word : words)
+			n += Long.bitCount(word);
+		int[] values = new int[n];
+		int k = 0;
+		for(int w = 0; w != words.length; ++w){
+			for(long word = words[w]; word != 0; word &= word - 1)
+				values[k++] = (w << 6) | Long.numberOfTrailingZeros(word);
+		}
+		return of(values, 0, n);
+	}
+
+	/**
+	 * @return the values in ascending order
+	 */
+	public int[] toArray() {
+		int[] values = new int[size];
+		fill(values);
+		return values;
+	}
+
+	/**
+	 * Get the number of values in both sets, such as the number of common
+	 * neighbors of two users
+	 *
+	 * @param other the other set
+	 * @return the cardinality of the intersection
+	 */
+	public int andCardinality(CompressedRow other) {
+		if(array != null && other.array != null)
+			return arrayAnd(array, offset, size, other.array, other.offset, other.size, null);
+		if(array != null || other.array != null){
+			CompressedRow small = (array != null) ? this : other;
+			CompressedRow large = (array != null) ? other : this;
+			int n = 0;
+			for(int pos = small.offset; pos != small.offset + small.size; ++pos){
+				if(large.contains(small.array[pos]))
+					n++;
+			}
+			return n;
+		}
+
+		int n = 0;
+		for(int i = 0, j = 0; i != keys.length && j != other.keys.length; ){
+			if(keys[i] < other.keys[j]){
+				i++;
+			} else if(keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				n += containerAndCardinality(containers[i], other.containers[j]);
+				i++;
+				j++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Get the intersection of two sets
+	 *
+	 * @param other the other set
+	 * @return the values in both sets
+	 */
+	public CompressedRow and(CompressedRow other) {
+		if(array != null && other.array != null){
+			int[] values = new int[Math.min(size, other.size)];
+			int n = arrayAnd(array, offset, size, other.array, other.offset, other.size, values);
+			return of(values, 0, n);
+		}
+		if(array != null || other.array != null){
+			CompressedRow small = (array != null) ? this : other;
+			CompressedRow large = (array != null) ? other : this;
+			int[] values = new int[small.size];
+			int n = 0;
+			for(int pos = small.offset; pos != small.offset + small.size; ++pos){
+				if(large.contains(small.array[pos]))
+					values[n++] = small.array[pos];
+			}
+			return of(values, 0, n);
+		}
+
+		int length = Math.min(keys.length, other.keys.length);
+		char[] resultKeys = new char[length];
+		Object[] resultContainers = new Object[length];
+		int[] resultCounts = new int[length];
+		int k = 0;
+		for(int i = 0, j = 0; i != keys.length && j != other.keys.length; ){
+			if(keys[i] < other.keys[j]){
+				i++;
+			} else if(keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Object container = containerAnd(containers[i], other.containers[j]);
+				int count = containerCardinality(container);
+				if(count != 0){
+					resultKeys[k] = keys[i];
+					resultContainers[k] = container;
+					resultCounts[k] = count;
+					k++;
+				}
+				i++;
+				j++;
+			}
+		}
+		return compact(new CompressedRow(resultKeys, resultContainers, resultCounts, k));
+	}
+
+	/**
+	 * Get the union of two sets
+	 *
+	 * @param other the other set
+	 * @return the values in either set
+	 */
+	public CompressedRow or(CompressedRow other) {
+		if(array != null && other.array != null){
+			int[] values = new int[size + other.size];
+			int n = 0, i = offset, j = other.offset;
+			int iEnd = offset + size, jEnd = other.offset + other.size;
+			while(i != iEnd && j != jEnd){
+				int a = array[i], b = other.array[j];
+				if(a <= b)
+					i++;
+				if(b <= a)
+					j++;
+				values[n++] = Math.min(a, b);
+			}
+			while(i != iEnd)
+				values[n++] = array[i++];
+			while(j != jEnd)
+				values[n++] = other.array[j++];
+			return of(values, 0, n);
+		}
+
+		CompressedRow left = (array != null) ? bitmapOf(array, offset, size) : this;
+		CompressedRow right = (other.array != null) ? bitmapOf(other.array, other.offset, other.size) : other;
+		int length = left.keys.length + right.keys.length;
+		char[] resultKeys = new char[length];
+		Object[] resultContainers = new Object[length];
+		int[] resultCounts = new int[length];
+		int k = 0;
+		int i = 0, j = 0;
+		while(i != left.keys.length || j != right.keys.length){
+			if(j == right.keys.length || (i != left.keys.length && left.keys[i] < right.keys[j])){
+				resultKeys[k] = left.keys[i];
+				resultContainers[k] = left.containers[i];
+				resultCounts[k] = left.counts[i];
+				i++;
+			} else if(i == left.keys.length || left.keys[i] > right.keys[j]) {
+				resultKeys[k] = right.keys[j];
+				resultContainers[k] = right.containers[j];
+				resultCounts[k] = right.counts[j];
+				j++;
+			} else {
+				resultKeys[k] = left.keys[i];
+				resultContainers[k] = containerOr(left.containers[i], right.containers[j]);
+				resultCounts[k] = containerCardinality(resultContainers[k]);
+				i++;
+				j++;
+			}
+			k++;
+		}
+		return compact(new CompressedRow(resultKeys, resultContainers, resultCounts, k));
+	}
+
+	/**
+	 * Get a compressed bitmap as a sorted array when it is small
+	 *
+	 * @param bitmap the compressed bitmap
+	 * @return the set in the form matching its size
+	 */
+	static CompressedRow compact(CompressedRow bitmap) {
+		if(bitmap.size >= BITMAP_THRESHOLD)
+			return bitmap;
+		return of(bitmap.toArray(), 0, bitmap.size);
+	}
+
+	/**
+	 * Intersect two ranges of sorted arrays, by merging them or, when one is
+	 * much shorter, by binary search of its values in the other
+	 *
+	 * @param a the first array
+	 * @param aOffset the start of the first range
+	 * @param aSize the size of the first range
+	 * @param b the second array
+	 * @param bOffset the start of the second range
+	 * @param bSize the size of the second range
+	 * @param dst the common values, null to count them only
+	 * @return the number of common values
+	 */
+	static int arrayAnd(int[] a, int aOffset, int aSize, int[] b, int bOffset, int bSize, int[] dst) {
+		if(aSize > bSize)
+			return arrayAnd(b, bOffset, bSize, a, aOffset, aSize, dst);
+		int n = 0;
+		if(aSize * 32 < bSize){
+			int from = bOffset, end = bOffset + bSize;
+			for(int i = aOffset; i != aOffset + aSize && from != end; ++i){
+				int found = Arrays.binarySearch(b, from, end, a[i]);
+				if(found >= 0){
+					if(dst != null)
+						dst[n] = a[i];
+					n++;
+					from = found + 1;
+				} else {
+					from = -found - 1;
+				}
+			}
+			return n;
+		}
+		// a branch free merge, both sides step on a tie
+		int i = aOffset, j = bOffset;
+		int aEnd = aOffset + aSize, bEnd = bOffset + bSize;
+		if(dst == null){
+			while(i < aEnd && j < bEnd){
+				int x = a[i], y = b[j];
+				n += (x == y) ? 1 : 0;
+				i += (x <= y) ? 1 : 0;
+				j += (y <= x) ? 1 : 0;
+			}
+			return n;
+		}
+		while(i < aEnd && j < bEnd){
+			int x = a[i], y = b[j];
+			dst[n] = x;
+			n += (x == y) ? 1 : 0;
+			i += (x <= y) ? 1 : 0;
+			j += (y <= x) ? 1 : 0;
+		}
+		return n;
+	}
+
+	/**
+	 * @param container a container
+	 * @param low the low 16 bits of a value
+	 * @return true if the container holds the value
+	 */
+	static boolean containerContains(Object container, char low) {
+		if(container instanceof char[])
+			return Arrays.binarySearch((char[]) container, low) >= 0;
+		return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+	}
+
+	/**
+	 * @param container a container
+	 * @return the number of values of the container
+	 */
+	static int containerCardinality(Object container) {
+		if(container instanceof char[])
+			return ((char[]) container).length;
+		int n = 0;
+		for(long word : (long[]) container)
+			n += Long.bitCount(word);
+		return n;
+	}
+
+	/**
+	 * Copy the values of a container into an array
+	 *
+	 * @param container the container
+	 * @param high the high 16 bits of the container, shifted
+	 * @param dst the destination array
+	 * @param n the first position to write
+	 * @return the position after the last written value
+	 */
+	static int containerFill(Object container, int high, int[] dst, int n) {
+		if(container instanceof char[]){
+			for(char low : (char[]) container)
+				dst[n++] = high | low;
+			return n;
+		}
+		long[] words = (long[]) container;
+		for(int w = 0; w != BITMAP_WORDS; ++w){
+			for(long word = words[w]; word != 0; word &= word - 1)
+				dst[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+		}
+		return n;
+	}
+
+	/**
+	 * @param a a container
+	 * @param b another container
+	 * @return the number of values in both containers
+	 */
+	static int containerAndCardinality(Object a, Object b) {
+		if(a instanceof long[] && b instanceof long[]){
+			long[] x = (long[]) a, y = (long[]) b;
+			int n = 0;
+			for(int w = 0; w != BITMAP_WORDS; ++w)
+				n += Long.bitCount(x[w] & y[w]);
+			return n;
+		}
+		if(a instanceof char[] && b instanceof char[])
+			return charAnd((char[]) a, (char[]) b, null);
+		char[] values = (char[]) ((a instanceof char[]) ? a : b);
+		long[] words = (long[]) ((a instanceof char[]) ? b : a);
+		int n = 0;
+		for(char low : values){
+			if((words[low >>> 6] & (1L << low)) != 0)
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @param a a container
+	 * @param b another container
+	 * @return the container of the values in both containers
+	 */
+	static Object containerAnd(Object a, Object b) {
+		if(a instanceof long[] && b instanceof long[]){
+			long[] x = (long[]) a, y = (long[]) b;
+			long[] words = new long[BITMAP_WORDS];
+			int n = 0;
+			for(int w = 0; w != BITMAP_WORDS; ++w){
+				words[w] = x[w] & y[w];
+				n += Long.bitCount(words[w]);
+			}
+			return (n > ARRAY_CONTAINER_MAX) ? words : toChars(words, n);
+		}
+		if(a instanceof char[] && b instanceof char[]){
+			char[] x = (char[]) a, y = (char[]) b;
+			char[] values = new char[Math.min(x.length, y.length)];
+			int n = charAnd(x, y, values);
+			return Arrays.copyOf(values, n);
+		}
+		char[] values = (char[]) ((a instanceof char[]) ? a : b);
+		long[] words = (long[]) ((a instanceof char[]) ? b : a);
+		char[] result = new char[values.length];
+		int n = 0;
+		for(char low : values){
+			if((words[low >>> 6] & (1L << low)) != 0)
+				result[n++] = low;
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * @param a a container
+	 * @param b another container
+	 * @return the container of the values in either container
+	 */
+	static Object containerOr(Object a, Object b) {
+		if(a instanceof char[] && b instanceof char[]){
+			char[] x = (char[]) a, y = (char[]) b;
+			char[] values = new char[x.length + y.length];
+			int n = 0, i = 0, j = 0;
+			while(i != x.length && j != y.length){
+				char u = x[i], v = y[j];
+				if(u <= v)
+					i++;
+				if(v <= u)
+					j++;
+				values[n++] = (u < v) ? u : v;
+			}
+			while(i != x.length)
+				values[n++] = x[i++];
+			while(j != y.length)
+				values[n++] = y[j++];
+			if(n <= ARRAY_CONTAINER_MAX)
+				return Arrays.copyOf(values, n);
+			long[] words = new long[BITMAP_WORDS];
+			for(int k = 0; k != n; ++k)
+				words[values[k] >>> 6] |= 1L << values[k];
+			return words;
+		}
+		long[] words = new long[BITMAP_WORDS];
+		for(Object container : new Object[] { a, b }){
+			if(container instanceof long[]){
+				long[] x = (long[]) container;
+				for(int w = 0; w != BITMAP_WORDS; ++w)
+					words[w] |= x[w];
+			} else {
+				for(char low : (char[]) container)
+					words[low >>> 6] |= 1L << low;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Intersect two sorted char arrays
+	 *
+	 * @param a the first array
+	 * @param b the second array
+	 * @param dst the common values, null to count them only
+	 * @return the number of common values
+	 */
+	static int charAnd(char[] a, char[] b, char[] dst) {
+		int n = 0, i = 0, j = 0;
+		while(i != a.length && j != b.length){
+			if(a[i] < b[j]){
+				i++;
+			} else if(a[i] > b[j]) {
+				j++;
+			} else {
+				if(dst != null)
+					dst[n] = a[i];
+				n++;
+				i++;
+				j++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @param words a bitmap container
+	 * @param n the number of values of the container
+	 * @return the values of the container as a sorted char array
+	 */
+	static char[] toChars(long[] words, int n) {
+		char[] values = new char[n];
+		int k = 0;
+		for(int w = 0; w != BITMAP_WORDS; ++w){
+			for(long word = words[w]; word != 0; word &= word - 1)
+				values[k++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+		}
+		return values;
+	}
+}
@@ -0,0 +1,115 @@
+package org.cis.matrix;
+
+/**
+ * This class implementing a frozen sparse boolean matrix for graphs with hub
+ * rows, such as power-law trust networks: every row and column is also held
+ * as a CompressedRow, the short ones as ranges of the compressed arrays and
+ * the long ones as Roaring style compressed bitmaps, so common neighbor counts
+ * and friend-of-friend expansions run on bitmap words instead of element by
+ * element
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class HybridSparseBooleanMatrix extends ImmutableSparseBooleanMatrix {
+
+	/** the set of each row */
+	final CompressedRow[] rows;
+	/** the set of each column */
+	final CompressedRow[] columns;
+
+	/**
+	 * Construct the hybrid form of a frozen matrix, the compressed arrays are shared
+	 *
+	 * @param matrix the frozen matrix
+	 */
+	public HybridSparseBooleanMatrix(ImmutableSparseBooleanMatrix matrix) {
+		this(matrix.dim1, matrix.dim2, matrix.rowOffsets, matrix.columnIndices,
+				matrix.columnOffsets, matrix.rowIndices,
+				sets(matrix.dim1, matrix.rowOffsets, matrix.columnIndices),
+				sets(matrix.dim2, matrix.columnOffsets, matrix.rowIndices));
+	}
+
+	/**
+	 * Construct a matrix from its compressed arrays and sets
+	 */
+	HybridSparseBooleanMatrix(int dim1, int dim2, int[] rowOffsets, int[] columnIndices,
+			int[] columnOffsets, int[] rowIndices, CompressedRow[] rows, CompressedRow[] columns) {
+		super(dim1, dim2, rowOffsets, columnIndices, columnOffsets, rowIndices);
+		this.rows = rows;
+		this.columns = columns;
+	}
+
+	/**
+	 * Get the sets of the compressed rows
+	 *
+	 * @param n the number of rows
+	 * @param offsets the start of each row, with one extra sentinel
+	 * @param indices the sorted indices of each row
+	 * @return the set of each row
+	 */
+	static CompressedRow[] sets(int n, int[] offsets, int[] indices) {
+		CompressedRow[] sets = new CompressedRow[n];
+		for(int r = 0; r != n; ++r)
+			sets[r] = CompressedRow.of(indices, offsets[r], offsets[r + 1] - offsets[r]);
+		return sets;
+	}
+
+	/**
+	 * Transpose of the matrix: A -> A', in O(1)
+	 */
+	public HybridSparseBooleanMatrix transpose() {
+		return new HybridSparseBooleanMatrix(dim2, dim1, columnOffsets, rowIndices,
+				rowOffsets, columnIndices, columns, rows);
+	}
+
+	/**
+	 * @param r the row number
+	 * @return the set of the r-th row, empty outside of the matrix
+	 */
+	public CompressedRow row(int r) {
+		return (r >= 0 && r < dim1) ? rows[r] : CompressedRow.EMPTY;
+	}
+
+	/**
+	 * @param c the column number
+	 * @return the set of the c-th column, empty outside of the matrix
+	 */
+	public CompressedRow column(int c) {
+		return (c >= 0 && c < dim2) ? columns[c] : CompressedRow.EMPTY;
+	}
+
+	/**
+	 * Get the number of columns set in both rows, such as the number of
+	 * users trusted by both u and v
+	 *
+	 * @param r1 a row number
+	 * @param r2 another row number
+	 * @return the number of common columns
+	 */
+	public int commonNeighbors(int r1, int r2) {
+		return row(r1).andCardinality(row(r2));
+	}
+
+	/**
+	 * Get the union of the rows of the columns set in the r-th row, such as
+	 * the friends of the friends of a user in a square matrix. A single
+	 * neighbor row is returned as is, more rows are merged into a dense bitmap
+	 *
+	 * @param r the row number
+	 * @return the union of the rows of the neighbors of r
+	 */
+	public CompressedRow expand(int r) {
+		int degree = getNumEntriesByRow(r);
+		if(degree == 0)
+			return CompressedRow.EMPTY;
+		if(degree == 1)
+			return row(columnIndices[rowStart(r)]);
+
+		// whole containers of 2^16 columns, so bitmap containers merge word by word
+		long[] words = new long[((dim2 + 0xFFFF) >>> 16) * CompressedRow.BITMAP_WORDS];
+		for(int pos = rowStart(r); pos != rowEnd(r); ++pos)
+			row(columnIndices[pos]).orInto(words);
+		return CompressedRow.fromWords(words);
+	}
+}
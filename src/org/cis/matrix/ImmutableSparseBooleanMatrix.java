@@ -0,0 +1,345 @@
+package org.cis.matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class implementing a frozen sparse boolean matrix in compressed sparse
+ * row form, rowOffsets and sorted columnIndices, together with its transpose in
+ * compressed sparse column form, columnOffsets and sorted rowIndices. Degrees
+ * are O(1), a row or a column is O(degree) and read in place through its
+ * IntView, forEach, or rowStart(), rowEnd() and columnIndex(), or
+ * columnStart(), columnEnd() and rowIndex(), without copying.
+ *
+ * Rows and columns outside of the dimensions are empty
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class ImmutableSparseBooleanMatrix implements SparseMatrix, BooleanMatrix {
+
+	/** the first dimension of the matrix */
+	final int dim1;
+	/** the second dimension of the matrix */
+	final int dim2;
+
+	/** the start of each row in columnIndices, with one extra sentinel */
+	final int[] rowOffsets;
+	/** the column indices of the entries, sorted inside each row */
+	final int[] columnIndices;
+	/** the start of each column in rowIndices, with one extra sentinel */
+	final int[] columnOffsets;
+	/** the row indices of the entries, sorted inside each column */
+	final int[] rowIndices;
+
+	/**
+	 * Construct a matrix from its compressed rows and columns
+	 *
+	 * @param dim1 the first dimension of the matrix
+	 * @param dim2 the second dimension of the matrix
+	 * @param rowOffsets the start of each row in columnIndices
+	 * @param columnIndices the sorted column indices of each row
+	 * @param columnOffsets the start of each column in rowIndices
+	 * @param rowIndices the sorted row indices of each column
+	 */
+	ImmutableSparseBooleanMatrix(int dim1, int dim2, int[] rowOffsets, int[] columnIndices,
+			int[] columnOffsets, int[] rowIndices) {
+		this.dim1 = dim1;
+		this.dim2 = dim2;
+		this.rowOffsets    = rowOffsets;
+		this.columnIndices = columnIndices;
+		this.columnOffsets = columnOffsets;
+		this.rowIndices    = rowIndices;
+	}
+
+	/**
+	 * Build a matrix from a list of entries, the duplicate entries are merged
+	 *
+	 * @param dim1 the first dimension of the matrix
+	 * @param dim2 the second dimension of the matrix
+	 * @param rows the row index of each entry
+	 * @param columns the column index of each entry
+	 * @param count the number of entries
+	 * @return the matrix
+	 */
+	public static ImmutableSparseBooleanMatrix build(int dim1, int dim2, int[] rows, int[] columns, int count) {
+		for(int k = 0; k != count; ++k){
+			if(rows[k] < 0 || rows[k] >= dim1 || columns[k] < 0 || columns[k] >= dim2)
+				throw new IllegalArgumentException("entry out of the matrix: (" + rows[k] + ", " + columns[k] + ")");
+		}
+
+		// counting sort by row, then sort and merge the columns of each row
+		int[] rowOffsets = new int[dim1 + 1];
+		for(int k = 0; k != count; ++k)
+			rowOffsets[rows[k] + 1]++;
+		for(int r = 0; r != dim1; ++r)
+			rowOffsets[r + 1] += rowOffsets[r];
+		int[] columnIndices = new int[count];
+		int[] next = new int[dim1];
+		System.arraycopy(rowOffsets, 0, next, 0, dim1);
+		for(int k = 0; k != count; ++k)
+			columnIndices[next[rows[k]]++] = columns[k];
+
+		int size = 0;
+		for(int r = 0; r != dim1; ++r){
+			int start = rowOffsets[r];
+			int end = rowOffsets[r + 1];
+			Arrays.sort(columnIndices, start, end);
+			rowOffsets[r] = size;
+			for(int pos = start; pos != end; ++pos){
+				if(pos == start || columnIndices[pos] != columnIndices[pos - 1])
+					columnIndices[size++] = columnIndices[pos];
+			}
+		}
+		rowOffsets[dim1] = size;
+		if(size != count)
+			columnIndices = Arrays.copyOf(columnIndices, size);
+
+		int[][] transposed = SparseTranspose.transpose(dim1, dim2, rowOffsets, columnIndices, null);
+		return new ImmutableSparseBooleanMatrix(dim1, dim2, rowOffsets, columnIndices, transposed[0], transposed[1]);
+	}
+
+	/**
+	 * Build a frozen copy of a sparse boolean matrix
+	 *
+	 * @param matrix the matrix
+	 * @return the frozen copy
+	 */
+	public static ImmutableSparseBooleanMatrix from(SparseBooleanMatrix matrix) {
+		int count = matrix.getNonEmpty();
+		int[] rows = new int[count];
+		int[] columns = new int[count];
+		int k = 0;
+		for(int r = 0; r <= matrix.getRow(); ++r){
+			for(int c : matrix.row_list.get(r)){
+				rows[k] = r;
+				columns[k] = c;
+				k++;
+			}
+		}
+		return build(matrix.getRowDimension(), matrix.getColumnDimension(), rows, columns, k);
+	}
+
+	/**
+	 * Get the first dimension of the matrix
+	 * @return
+	 */
+	public int getRowDimension() {
+		return dim1;
+	}
+
+	/**
+	 * Get the second dimension of the matrix
+	 * @return
+	 */
+	public int getColumnDimension() {
+		return dim2;
+	}
+
+	/**
+	 * Get an element in the sparse matrix, by binary search in its row
+	 *
+	 * @param r the row index of the element
+	 * @param c the column index of the element
+	 * @return the r-th row c-th column element of the matrix
+	 */
+	public boolean getEntry(int r, int c) {
+		if(r < 0 || r >= dim1)
+			return false;
+		return Arrays.binarySearch(columnIndices, rowOffsets[r], rowOffsets[r + 1], c) >= 0;
+	}
+
+	/**
+	 * Transpose of the matrix: A -> A', in O(1) by swapping the rows and the columns
+	 *
+	 * @return the transpose of the sparse matrix
+	 */
+	public ImmutableSparseBooleanMatrix transpose() {
+		return new ImmutableSparseBooleanMatrix(dim2, dim1, columnOffsets, rowIndices, rowOffsets, columnIndices);
+	}
+
+	/**
+	 * @param r the row number
+	 * @return the position of the first entry of the row
+	 */
+	public int rowStart(int r) {
+		return (r >= 0 && r < dim1) ? rowOffsets[r] : 0;
+	}
+
+	/**
+	 * @param r the row number
+	 * @return the position after the last entry of the row
+	 */
+	public int rowEnd(int r) {
+		return (r >= 0 && r < dim1) ? rowOffsets[r + 1] : 0;
+	}
+
+	/**
+	 * @param pos a position between rowStart(r) and rowEnd(r)
+	 * @return the column index of the entry
+	 */
+	public int columnIndex(int pos) {
+		return columnIndices[pos];
+	}
+
+	/**
+	 * @param c the column number
+	 * @return the position of the first entry of the column
+	 */
+	public int columnStart(int c) {
+		return (c >= 0 && c < dim2) ? columnOffsets[c] : 0;
+	}
+
+	/**
+	 * @param c the column number
+	 * @return the position after the last entry of the column
+	 */
+	public int columnEnd(int c) {
+		return (c >= 0 && c < dim2) ? columnOffsets[c + 1] : 0;
+	}
+
+	/**
+	 * @param pos a position between columnStart(c) and columnEnd(c)
+	 * @return the row index of the entry
+	 */
+	public int rowIndex(int pos) {
+		return rowIndices[pos];
+	}
+
+	/**
+	 * Get the r-th row of the matrix, a copy in ascending order
+	 */
+	public ArrayList<Integer> getRow(int r) {
+		ArrayList<Integer> list = new ArrayList<Integer>(rowEnd(r) - rowStart(r));
+		for(int pos = rowStart(r); pos != rowEnd(r); ++pos)
+			list.add(columnIndices[pos]);
+		return list;
+	}
+
+	/**
+	 * Get the c-th column of the matrix, a copy in ascending order
+	 */
+	public ArrayList<Integer> getColumn(int c) {
+		ArrayList<Integer> list = new ArrayList<Integer>(columnEnd(c) - columnStart(c));
+		for(int pos = columnStart(c); pos != columnEnd(c); ++pos)
+			list.add(rowIndices[pos]);
+		return list;
+	}
+
+	/**
+	 * Get a view of the r-th row over the column indices, in ascending order
+	 */
+	public IntView getRowView(int r) {
+		return new IntView(columnIndices, rowStart(r), rowEnd(r) - rowStart(r));
+	}
+
+	/**
+	 * Get a view of the c-th column over the row indices, in ascending order
+	 */
+	public IntView getColumnView(int c) {
+		return new IntView(rowIndices, columnStart(c), columnEnd(c) - columnStart(c));
+	}
+
+	/**
+	 * Pass the column indices of the r-th row to a consumer, in ascending order
+	 */
+	public void forEachInRow(int r, IntConsumer consumer) {
+		for(int pos = rowStart(r); pos != rowEnd(r); ++pos)
+			consumer.accept(columnIndices[pos]);
+	}
+
+	/**
+	 * Pass the row indices of the c-th column to a consumer, in ascending order
+	 */
+	public void forEachInColumn(int c, IntConsumer consumer) {
+		for(int pos = columnStart(c); pos != columnEnd(c); ++pos)
+			consumer.accept(rowIndices[pos]);
+	}
+
+	/**
+	 * Copy the column indices of the r-th row into an array, in ascending order
+	 */
+	public int fillRow(int r, int[] dst) {
+		int size = rowEnd(r) - rowStart(r);
+		System.arraycopy(columnIndices, rowStart(r), dst, 0, size);
+		return size;
+	}
+
+	/**
+	 * Copy the row indices of the c-th column into an array, in ascending order
+	 */
+	public int fillColumn(int c, int[] dst) {
+		int size = columnEnd(c) - columnStart(c);
+		System.arraycopy(rowIndices, columnStart(c), dst, 0, size);
+		return size;
+	}
+
+	/**
+	 * Copy the row-ids of non empty into an array
+	 */
+	public int fillNonEmptyRowIds(int[] dst) {
+		int size = 0;
+		for(int r = 0; r != dim1; ++r){
+			if(rowOffsets[r + 1] != rowOffsets[r])
+				dst[size++] = r;
+		}
+		return size;
+	}
+
+	/**
+	 * Copy the column-ids of non empty into an array
+	 */
+	public int fillNonEmptyColumnIds(int[] dst) {
+		int size = 0;
+		for(int c = 0; c != dim2; ++c){
+			if(columnOffsets[c + 1] != columnOffsets[c])
+				dst[size++] = c;
+		}
+		return size;
+	}
+
+	/**
+	 * Get the non empty elements in the matrix
+	 */
+	public int getNonEmpty() {
+		return rowOffsets[dim1];
+	}
+
+	/**
+	 * Get the row-ids of non empty
+	 */
+	public ArrayList<Integer> getNonEmptyRowIds() {
+		ArrayList<Integer> list = new ArrayList<Integer>();
+		for(int r = 0; r != dim1; ++r){
+			if(rowOffsets[r + 1] != rowOffsets[r])
+				list.add(r);
+		}
+		return list;
+	}
+
+	/**
+	 * Get the column-ids of non empty
+	 */
+	public ArrayList<Integer> getNonEmptyColumnIds() {
+		ArrayList<Integer> list = new ArrayList<Integer>();
+		for(int c = 0; c != dim2; ++c){
+			if(columnOffsets[c + 1] != columnOffsets[c])
+				list.add(c);
+		}
+		return list;
+	}
+
+	/**
+	 * Get the number of elements in the given row, 0 outside of the matrix
+	 */
+	public int getNumEntriesByRow(int r) {
+		return rowEnd(r) - rowStart(r);
+	}
+
+	/**
+	 * Get the number of elements in the given column, 0 outside of the matrix
+	 */
+	public int getNumEntriesByColumn(int c) {
+		return columnEnd(c) - columnStart(c);
+	}
+}
@@ -0,0 +1,344 @@
+package org.cis.matrix;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class implementing a frozen weighted sparse matrix: the pattern of an
+ * ImmutableSparseBooleanMatrix, compressed sparse rows and columns, with a
+ * double value for every entry in each of the two forms, rowValues along
+ * columnIndices and columnValues along rowIndices.
+ *
+ * The products with a dense vector, multiply(double[], double[]), and with a
+ * dense factor matrix of one row per column, multiply(double[][], double[][]),
+ * cut the rows into blocks of about the same number of entries and run the
+ * blocks on a pool of threads. Every output row is summed by one thread
+ * in the order of its entries, so the result does not depend on the number of
+ * threads; the products with the transpose run on the compressed columns and
+ * need no locking either
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class ImmutableSparseDoubleMatrix extends ImmutableSparseBooleanMatrix {
+
+	/** the number of multiply-adds below which a product runs on the calling thread */
+	static final int PARALLEL_THRESHOLD = 1 << 18;
+
+	/** the pool shared by the products, one daemon thread per processor, created on first use */
+	static ExecutorService sharedPool;
+
+	/** the value of each entry, along columnIndices */
+	final double[] rowValues;
+	/** the value of each entry, along rowIndices */
+	final double[] columnValues;
+
+	/**
+	 * Construct a matrix from its compressed rows and columns
+	 *
+	 * @param dim1 the first dimension of the matrix
+	 * @param dim2 the second dimension of the matrix
+	 * @param rowOffsets the start of each row in columnIndices
+	 * @param columnIndices the sorted column indices of each row
+	 * @param rowValues the value of each entry along columnIndices
+	 * @param columnOffsets the start of each column in rowIndices
+	 * @param rowIndices the sorted row indices of each column
+	 * @param columnValues the value of each entry along rowIndices
+	 */
+	ImmutableSparseDoubleMatrix(int dim1, int dim2, int[] rowOffsets, int[] columnIndices, double[] rowValues,
+			int[] columnOffsets, int[] rowIndices, double[] columnValues) {
+		super(dim1, dim2, rowOffsets, columnIndices, columnOffsets, rowIndices);
+		this.rowValues = rowValues;
+		this.columnValues = columnValues;
+	}
+
+	/**
+	 * Build a matrix from a list of entries, a duplicate entry keeps the value
+	 * which comes last in the list
+	 *
+	 * @param dim1 the first dimension of the matrix
+	 * @param dim2 the second dimension of the matrix
+	 * @param rows the row index of each entry
+	 * @param columns the column index of each entry
+	 * @param values the value of each entry
+	 * @param count the number of entries
+	 * @return the matrix
+	 */
+	public static ImmutableSparseDoubleMatrix build(int dim1, int dim2, int[] rows, int[] columns,
+			double[] values, int count) {
+		for(int k = 0; k != count; ++k){
+			if(rows[k] < 0 || rows[k] >= dim1 || columns[k] < 0 || columns[k] >= dim2)
+				throw new IllegalArgumentException("entry out of the matrix: (" + rows[k] + ", " + columns[k] + ")");
+		}
+
+		// counting sort by row, then sort each row by the key (column << 32 | entry)
+		int[] rowOffsets = new int[dim1 + 1];
+		for(int k = 0; k != count; ++k)
+			rowOffsets[rows[k] + 1]++;
+		for(int r = 0; r != dim1; ++r)
+			rowOffsets[r + 1] += rowOffsets[r];
+		long[] keys = new long[count];
+		int[] next = new int[dim1];
+		System.arraycopy(rowOffsets, 0, next, 0, dim1);
+		for(int k = 0; k != count; ++k)
+			keys[next[rows[k]]++] = ((long) columns[k] << 32) | k;
+
+		int[] columnIndices = new int[count];
+		double[] rowValues = new double[count];
+		int size = 0;
+		for(int r = 0; r != dim1; ++r){
+			int start = rowOffsets[r];
+			int end = rowOffsets[r + 1];
+			Arrays.sort(keys, start, end);
+			rowOffsets[r] = size;
+			for(int pos = start; pos != end; ++pos){
+				int column = (int) (keys[pos] >>> 32);
+				if(pos != start && column == columnIndices[size - 1]){
+					rowValues[size - 1] = values[(int) keys[pos]];
+				} else {
+					columnIndices[size] = column;
+					rowValues[size] = values[(int) keys[pos]];
+					size++;
+				}
+			}
+		}
+		rowOffsets[dim1] = size;
+		if(size != count){
+			columnIndices = Arrays.copyOf(columnIndices, size);
+			rowValues = Arrays.copyOf(rowValues, size);
+		}
+		return fromRows(dim1, dim2, rowOffsets, columnIndices, rowValues);
+	}
+
+	/**
+	 * Build a matrix from its compressed rows, the columns are transposed
+	 *
+	 * @param dim1 the first dimension of the matrix
+	 * @param dim2 the second dimension of the matrix
+	 * @param rowOffsets the start of each row in columnIndices, with one extra sentinel
+	 * @param columnIndices the sorted column indices of each row
+	 * @param rowValues the value of each entry along columnIndices
+	 * @return the matrix
+	 */
+	static ImmutableSparseDoubleMatrix fromRows(int dim1, int dim2, int[] rowOffsets, int[] columnIndices,
+			double[] rowValues) {
+		int size = rowOffsets[dim1];
+		int[] positions = new int[size];
+		int[][] transposed = SparseTranspose.transpose(dim1, dim2, rowOffsets, columnIndices, positions);
+		double[] columnValues = new double[size];
+		for(int pos = 0; pos != size; ++pos)
+			columnValues[pos] = rowValues[positions[pos]];
+		return new ImmutableSparseDoubleMatrix(dim1, dim2, rowOffsets, columnIndices, rowValues,
+				transposed[0], transposed[1], columnValues);
+	}
+
+	/**
+	 * Build the row normalized form of a boolean matrix, each entry of the
+	 * r-th row weighs 1 / getNumEntriesByRow(r), such as the trust of a user
+	 * shared uniformly by the users it trusts. The compressed arrays are shared
+	 *
+	 * @param matrix the boolean matrix
+	 * @return the row stochastic matrix
+	 */
+	public static ImmutableSparseDoubleMatrix rowNormalized(ImmutableSparseBooleanMatrix matrix) {
+		int[] rowOffsets = matrix.rowOffsets;
+		double[] rowValues = new double[matrix.getNonEmpty()];
+		for(int r = 0; r != matrix.dim1; ++r){
+			double weight = 1.0 / (rowOffsets[r + 1] - rowOffsets[r]);
+			for(int pos = rowOffsets[r]; pos != rowOffsets[r + 1]; ++pos)
+				rowValues[pos] = weight;
+		}
+		double[] columnValues = new double[matrix.getNonEmpty()];
+		for(int pos = 0; pos != columnValues.length; ++pos){
+			int r = matrix.rowIndices[pos];
+			columnValues[pos] = 1.0 / (rowOffsets[r + 1] - rowOffsets[r]);
+		}
+		return new ImmutableSparseDoubleMatrix(matrix.dim1, matrix.dim2, rowOffsets, matrix.columnIndices,
+				rowValues, matrix.columnOffsets, matrix.rowIndices, columnValues);
+	}
+
+	/**
+	 * Get a value in the sparse matrix, by binary search in its row
+	 *
+	 * @param r the row index of the element
+	 * @param c the column index of the element
+	 * @return the r-th row c-th column value of the matrix, 0 if it is not set
+	 */
+	public double getValue(int r, int c) {
+		if(r < 0 || r >= dim1)
+			return 0;
+		int pos = Arrays.binarySearch(columnIndices, rowOffsets[r], rowOffsets[r + 1], c);
+		return (pos >= 0) ? rowValues[pos] : 0;
+	}
+
+	/**
+	 * Transpose of the matrix: A -> A', in O(1) by swapping the rows and the columns
+	 *
+	 * @return the transpose of the sparse matrix
+	 */
+	public ImmutableSparseDoubleMatrix transpose() {
+		return new ImmutableSparseDoubleMatrix(dim2, dim1, columnOffsets, rowIndices, columnValues,
+				rowOffsets, columnIndices, rowValues);
+	}
+
+	/**
+	 * @param pos a position between rowStart(r) and rowEnd(r)
+	 * @return the value of the entry
+	 */
+	public double valueInRow(int pos) {
+		return rowValues[pos];
+	}
+
+	/**
+	 * @param pos a position between columnStart(c) and columnEnd(c)
+	 * @return the value of the entry
+	 */
+	public double valueInColumn(int pos) {
+		return columnValues[pos];
+	}
+
+	/**
+	 * Multiply the matrix by a dense vector, y = A x, with one thread per processor
+	 *
+	 * @param x the vector, of at least getColumnDimension() values
+	 * @param y the product, of at least getRowDimension() values
+	 */
+	public void multiply(double[] x, double[] y) {
+		multiply(x, y, parallelism(1));
+	}
+
+	/**
+	 * Multiply the matrix by a dense vector, y = A x, with the given number of threads
+	 *
+	 * @param x the vector, of at least getColumnDimension() values
+	 * @param y the product, of at least getRowDimension() values
+	 * @param parallelism the number of threads
+	 */
+	public void multiply(final double[] x, final double[] y, int parallelism) {
+		final int[] rowBounds = rowBlocks(parallelism);
+		ExecutorService pool = pool(parallelism);
+		try {
+			SparseTranspose.forEachBlock(pool, rowBounds.length - 1, new SparseTranspose.Body() {
+				public void run(int b) {
+					for(int r = rowBounds[b]; r != rowBounds[b + 1]; ++r){
+						double sum = 0;
+						for(int pos = rowOffsets[r]; pos != rowOffsets[r + 1]; ++pos)
+							sum += rowValues[pos] * x[columnIndices[pos]];
+						y[r] = sum;
+					}
+				}
+			});
+		} finally {
+			release(pool);
+		}
+	}
+
+	/**
+	 * Multiply the matrix by a dense factor matrix, Y = A X, with one thread per processor
+	 *
+	 * @param x the factor matrix, one row of the same width per column of A
+	 * @param y the product, one row of the width of x per row of A
+	 */
+	public void multiply(double[][] x, double[][] y) {
+		int width = (x.length == 0) ? 0 : x[0].length;
+		multiply(x, y, parallelism(width));
+	}
+
+	/**
+	 * Multiply the matrix by a dense factor matrix, Y = A X, with the given number of threads
+	 *
+	 * @param x the factor matrix, one row of the same width per column of A
+	 * @param y the product, one row of the width of x per row of A
+	 * @param parallelism the number of threads
+	 */
+	public void multiply(final double[][] x, final double[][] y, int parallelism) {
+		final int[] rowBounds = rowBlocks(parallelism);
+		ExecutorService pool = pool(parallelism);
+		try {
+			SparseTranspose.forEachBlock(pool, rowBounds.length - 1, new SparseTranspose.Body() {
+				public void run(int b) {
+					for(int r = rowBounds[b]; r != rowBounds[b + 1]; ++r){
+						double[] sum = y[r];
+						Arrays.fill(sum, 0);
+						for(int pos = rowOffsets[r]; pos != rowOffsets[r + 1]; ++pos){
+							double value = rowValues[pos];
+							double[] row = x[columnIndices[pos]];
+							for(int f = 0; f != sum.length; ++f)
+								sum[f] += value * row[f];
+						}
+					}
+				}
+			});
+		} finally {
+			release(pool);
+		}
+	}
+
+	/**
+	 * @param width the number of multiply-adds per entry
+	 * @return the number of threads of a product
+	 */
+	int parallelism(int width) {
+		if((long) getNonEmpty() * width < PARALLEL_THRESHOLD)
+			return 1;
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Cut the rows into blocks of about the same number of entries
+	 *
+	 * @param parallelism the number of threads
+	 * @return the first row of each block, with one extra sentinel
+	 */
+	int[] rowBlocks(int parallelism) {
+		int size = getNonEmpty();
+		int blocks = (parallelism > 1) ? Math.max(Math.min(parallelism * 4, dim1), 1) : 1;
+		int[] rowBounds = new int[blocks + 1];
+		rowBounds[blocks] = dim1;
+		for(int b = 1; b != blocks; ++b)
+			rowBounds[b] = Math.max(SparseTranspose.firstRowFrom(rowOffsets, dim1, (int) ((long) size * b / blocks)),
+					rowBounds[b - 1]);
+		return rowBounds;
+	}
+
+	/**
+	 * Get the pool of a product. Up to one thread per processor the products
+	 * share a pool of daemon threads which is kept between them and never shut
+	 * down; a larger parallelism gets a private pool, to be released after use
+	 *
+	 * @param parallelism the number of threads
+	 * @return the pool, null to run on the calling thread
+	 */
+	static ExecutorService pool(int parallelism) {
+		if(parallelism <= 1)
+			return null;
+		int processors = Runtime.getRuntime().availableProcessors();
+		if(parallelism > processors)
+			return Executors.newFixedThreadPool(parallelism);
+		synchronized(ImmutableSparseDoubleMatrix.class) {
+			if(sharedPool == null){
+				sharedPool = Executors.newFixedThreadPool(processors, new ThreadFactory() {
+					public Thread newThread(Runnable task) {
+						Thread thread = new Thread(task, "sparse-product");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			return sharedPool;
+		}
+	}
+
+	/**
+	 * Release the pool of a product, a private pool is shut down and the
+	 * shared one is kept
+	 *
+	 * @param pool the pool returned by pool(int), may be null
+	 */
+	static void release(ExecutorService pool) {
+		if(pool != null && pool != sharedPool)
+			pool.shutdownNow();
+	}
+}
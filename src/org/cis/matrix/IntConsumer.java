@@ -0,0 +1,18 @@
+package org.cis.matrix;
+
+/**
+ * This interface receiving the int values of a row or a column one by one,
+ * without boxing
+ * 
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public interface IntConsumer {
+	
+	/**
+	 * Receive a value
+	 * 
+	 * @param value the value
+	 */
+	void accept(int value);
+}
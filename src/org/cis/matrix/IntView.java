@@ -0,0 +1,75 @@
+package org.cis.matrix;
+
+/**
+ * This class implementing a read-only view over a range of an int array, such
+ * as the column indices of a row of a compressed matrix. The view shares the
+ * array, nothing is copied
+ * 
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public final class IntView {
+	
+	/** the empty view */
+	public static final IntView EMPTY = new IntView(new int[0], 0, 0);
+	
+	/** the viewed array */
+	final int[] array;
+	/** the first position of the range */
+	final int offset;
+	/** the number of values */
+	final int length;
+	
+	/**
+	 * Construct a view of array[offset] ... array[offset + length - 1]
+	 * 
+	 * @param array the viewed array
+	 * @param offset the first position of the range
+	 * @param length the number of values
+	 */
+	public IntView(int[] array, int offset, int length) {
+		if(offset < 0 || length < 0 || offset + length > array.length)
+			throw new IllegalArgumentException("invalid range: " + offset + ", " + length);
+		this.array  = array;
+		this.offset = offset;
+		this.length = length;
+	}
+	
+	/**
+	 * @return the number of values
+	 */
+	public int size() {
+		return length;
+	}
+	
+	/**
+	 * @param k the position in the view
+	 * @return the k-th value
+	 */
+	public int get(int k) {
+		if(k < 0 || k >= length)
+			throw new IndexOutOfBoundsException("position " + k + " of a view of " + length);
+		return array[offset + k];
+	}
+	
+	/**
+	 * Pass every value to a consumer, in order
+	 * 
+	 * @param consumer the consumer
+	 */
+	public void forEach(IntConsumer consumer) {
+		for(int pos = offset; pos != offset + length; ++pos)
+			consumer.accept(array[pos]);
+	}
+	
+	/**
+	 * Copy the values into an array
+	 * 
+	 * @param dst the destination array, at least size() long
+	 * @return the number of copied values
+	 */
+	public int copyTo(int[] dst) {
+		System.arraycopy(array, offset, dst, 0, length);
+		return length;
+	}
+}
@@ -1,8 +1,11 @@
 package org.cis.matrix;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class implementing a sparse boolean matrix
@@ -63,6 +66,22 @@ public class SparseBooleanMatrix implements SparseMatrix{
 		return this.maxRow;
 	}
 	
+	/**
+	 * Get the first dimension of the matrix
+	 * @return
+	 */
+	public int getRowDimension(){
+		return this.dim1;
+	}
+	
+	/**
+	 * Get the second dimension of the matrix
+	 * @return
+	 */
+	public int getColumnDimension(){
+		return this.dim2;
+	}
+	
 	/**
 	 * Set the column number of the matrix
 	 * @param column
@@ -125,20 +144,42 @@ public class SparseBooleanMatrix implements SparseMatrix{
 	/**
 	 * Transpose of the matrix: A -> A'
 	 * 
+	 * The entries are transposed in compressed form with the parallel
+	 * counting sort of SparseTranspose, then the rows of the transpose
+	 * are filled in parallel
+	 * 
 	 * @return the transpose of the sparse matrix
 	 */
 	public SparseBooleanMatrix transpose() {
-		SparseBooleanMatrix matrix = new SparseBooleanMatrix(dim2, dim1);
+		final SparseBooleanMatrix matrix = new SparseBooleanMatrix(dim2, dim1);
 		
 		matrix.count = this.count;
-		matrix.setColumn(this.maxColumn);
-		matrix.setRow(this.maxRow);
+		matrix.setColumn(this.maxRow);
+		matrix.setRow(this.maxColumn);
 		
-		for( int row_id = 0; row_id <= maxRow; ++row_id){
-			Iterator<Integer> iterator = row_list.get(row_id).iterator();
-			while(iterator.hasNext()){
-				matrix.setEntry(iterator.next(), row_id);
-			}
+		final ImmutableSparseBooleanMatrix transposed = ImmutableSparseBooleanMatrix.from(this).transpose();
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = (parallelism > 1 && count >= SparseTranspose.PARALLEL_THRESHOLD)
+				? Executors.newFixedThreadPool(parallelism) : null;
+		final int blocks = (pool != null) ? parallelism * 4 : 1;
+		try {
+			SparseTranspose.forEachBlock(pool, blocks, new SparseTranspose.Body() {
+				public void run(int b) {
+					int end = (int) ((long) dim2 * (b + 1) / blocks);
+					for(int r = (int) ((long) dim2 * b / blocks); r != end; ++r){
+						int degree = transposed.getNumEntriesByRow(r);
+						if(degree == 0)
+							continue;
+						HashSet<Integer> row = new HashSet<Integer>(degree * 4 / 3 + 1);
+						for(int pos = transposed.rowStart(r); pos != transposed.rowEnd(r); ++pos)
+							row.add(transposed.columnIndex(pos));
+						matrix.row_list.set(r, row);
+					}
+				}
+			});
+		} finally {
+			if(pool != null)
+				pool.shutdownNow();
 		}
 		
 		return matrix;
@@ -213,6 +254,113 @@ public class SparseBooleanMatrix implements SparseMatrix{
 		return new ArrayList<Integer>(set);
 	}
 
+	/**
+	 * Get a view of a primitive copy of the r-th row, in no particular order
+	 */
+	public IntView getRowView(int r) {
+		if(r < 0 || r >= dim1)
+			return IntView.EMPTY;
+		int[] row = new int[row_list.get(r).size()];
+		return new IntView(row, 0, fillRow(r, row));
+	}
+	
+	/**
+	 * Get a view of a primitive copy of the c-th column, scanning every row
+	 */
+	public IntView getColumnView(int c) {
+		final int[][] column = { new int[16] };
+		final int[] size = { 0 };
+		forEachInColumn(c, new IntConsumer() {
+			public void accept(int r) {
+				if(size[0] == column[0].length)
+					column[0] = Arrays.copyOf(column[0], size[0] * 2);
+				column[0][size[0]++] = r;
+			}
+		});
+		return new IntView(column[0], 0, size[0]);
+	}
+	
+	/**
+	 * Pass the column indices of the r-th row to a consumer, in no particular order
+	 */
+	public void forEachInRow(int r, IntConsumer consumer) {
+		if(r < 0 || r >= dim1)
+			return;
+		for(int c : row_list.get(r))
+			consumer.accept(c);
+	}
+	
+	/**
+	 * Pass the row indices of the c-th column to a consumer, scanning every row
+	 */
+	public void forEachInColumn(int c, IntConsumer consumer) {
+		if( c > maxColumn)
+			return;
+		Integer column = c;
+		for( int row_id = 0; row_id <= maxRow; ++row_id){
+			if(row_list.get(row_id).contains(column))
+				consumer.accept(row_id);
+		}
+	}
+	
+	/**
+	 * Copy the column indices of the r-th row into an array, in no particular order
+	 */
+	public int fillRow(int r, int[] dst) {
+		if(r < 0 || r >= dim1)
+			return 0;
+		int size = 0;
+		for(int c : row_list.get(r))
+			dst[size++] = c;
+		return size;
+	}
+	
+	/**
+	 * Copy the row indices of the c-th column into an array, scanning every row
+	 */
+	public int fillColumn(int c, int[] dst) {
+		if( c > maxColumn)
+			return 0;
+		Integer column = c;
+		int size = 0;
+		for( int row_id = 0; row_id <= maxRow; ++row_id){
+			if(row_list.get(row_id).contains(column))
+				dst[size++] = row_id;
+		}
+		return size;
+	}
+	
+	/**
+	 * Copy the row-ids of non empty into an array
+	 */
+	public int fillNonEmptyRowIds(int[] dst) {
+		int size = 0;
+		for(int row_id = 0; row_id <= maxRow; ++row_id){
+			if(!row_list.get(row_id).isEmpty())
+				dst[size++] = row_id;
+		}
+		return size;
+	}
+	
+	/**
+	 * Copy the column-ids of non empty into an array
+	 */
+	public int fillNonEmptyColumnIds(int[] dst) {
+		if(maxColumn < 0)
+			return 0;
+		boolean[] nonEmpty = new boolean[maxColumn + 1];
+		for(int row_id = 0; row_id <= maxRow; ++row_id){
+			for(int c : row_list.get(row_id))
+				nonEmpty[c] = true;
+		}
+		int size = 0;
+		for(int c = 0; c <= maxColumn; ++c){
+			if(nonEmpty[c])
+				dst[size++] = c;
+		}
+		return size;
+	}
+	
 	/**
 	 * Get the number of elements in the given row
 	 * 
@@ -62,4 +62,72 @@ public interface SparseMatrix {
 	 * @return The number of elemnts in the c-th column
 	 */
 	int getNumEntriesByColumn( int c);
+	
+	/**
+	 * Get a view of the column indices of the r-th row, over the storage
+	 * of the matrix when it has arrays, otherwise over a primitive copy
+	 * 
+	 * @param r the row number
+	 * @return the view of the r-th row
+	 */
+	IntView getRowView( int r);
+	
+	/**
+	 * Get a view of the row indices of the c-th column, over the storage
+	 * of the matrix when it has arrays, otherwise over a primitive copy
+	 * 
+	 * @param c the column number
+	 * @return the view of the c-th column
+	 */
+	IntView getColumnView( int c);
+	
+	/**
+	 * Pass the column indices of the r-th row to a consumer, without boxing
+	 * 
+	 * @param r the row number
+	 * @param consumer the consumer
+	 */
+	void forEachInRow( int r, IntConsumer consumer);
+	
+	/**
+	 * Pass the row indices of the c-th column to a consumer, without boxing
+	 * 
+	 * @param c the column number
+	 * @param consumer the consumer
+	 */
+	void forEachInColumn( int c, IntConsumer consumer);
+	
+	/**
+	 * Copy the column indices of the r-th row into an array
+	 * 
+	 * @param r the row number
+	 * @param dst the destination array, at least getNumEntriesByRow(r) long
+	 * @return the number of copied indices
+	 */
+	int fillRow( int r, int[] dst);
+	
+	/**
+	 * Copy the row indices of the c-th column into an array
+	 * 
+	 * @param c the column number
+	 * @param dst the destination array, at least getNumEntriesByColumn(c) long
+	 * @return the number of copied indices
+	 */
+	int fillColumn( int c, int[] dst);
+	
+	/**
+	 * Copy the row-ids of non empty into an array, in ascending order
+	 * 
+	 * @param dst the destination array, at least as long as the number of rows
+	 * @return the number of copied row-ids
+	 */
+	int fillNonEmptyRowIds( int[] dst);
+	
+	/**
+	 * Copy the column-ids of non empty into an array, in ascending order
+	 * 
+	 * @param dst the destination array, at least as long as the number of columns
+	 * @return the number of copied column-ids
+	 */
+	int fillNonEmptyColumnIds( int[] dst);
 }
@@ -0,0 +1,225 @@
+package org.cis.matrix;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class transposing compressed sparse rows into compressed sparse columns
+ * with a parallel counting sort on a pool of threads:
+ *
+ * 1, the rows are cut into blocks of about the same number of entries and the
+ *    column degrees of each block are counted into its own histogram
+ * 2, the histograms are prefix-summed over the blocks and the columns, by
+ *    ranges of columns, which gives the column offsets and the first output
+ *    position of each (block, column)
+ * 3, each block scatters its entries to their positions
+ *
+ * The blocks are in row order and each block scans its rows in order, so the
+ * row indices of every column come out sorted, as with the sequential sort
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class SparseTranspose {
+
+	/** the number of entries below which the transpose runs on the calling thread */
+	static final int PARALLEL_THRESHOLD = 1 << 18;
+
+	/**
+	 * This interface defining the work on one block of a parallel loop
+	 */
+	interface Body {
+
+		/**
+		 * Run the work of a block
+		 *
+		 * @param block the block number
+		 */
+		void run(int block);
+	}
+
+	/**
+	 * Run a body on every block, in parallel
+	 *
+	 * @param pool the pool of threads, null to run on the calling thread
+	 * @param blocks the number of blocks
+	 * @param body the work of a block
+	 */
+	static void forEachBlock(ExecutorService pool, int blocks, final Body body) {
+		if(pool == null || blocks == 1){
+			for(int b = 0; b != blocks; ++b)
+				body.run(b);
+			return;
+		}
+		ArrayList<Future<Object>> tasks = new ArrayList<Future<Object>>(blocks);
+		try {
+			for(int b = 0; b != blocks; ++b){
+				final int block = b;
+				tasks.add(pool.submit(new Callable<Object>() {
+					public Object call() {
+						body.run(block);
+						return null;
+					}
+				}));
+			}
+			for(Future<Object> task : tasks)
+				task.get();
+		} catch (InterruptedException e) {
+			for(Future<Object> task : tasks)
+				task.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while running the blocks", e);
+		} catch (ExecutionException e) {
+			for(Future<Object> task : tasks)
+				task.cancel(true);
+			throw new IllegalStateException("failed to run the blocks", e.getCause());
+		}
+	}
+
+	/**
+	 * Transpose compressed sparse rows with one thread per processor
+	 *
+	 * @param dim1 the number of rows
+	 * @param dim2 the number of columns
+	 * @param rowOffsets the start of each row in columnIndices, with one extra sentinel
+	 * @param columnIndices the column indices of the entries
+	 * @param positions if not null, filled with the position in columnIndices
+	 *        of each entry of the result, to move the values of a weighted matrix
+	 * @return the column offsets and the row indices
+	 */
+	public static int[][] transpose(int dim1, int dim2, int[] rowOffsets, int[] columnIndices, int[] positions) {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		if(rowOffsets[dim1] < PARALLEL_THRESHOLD)
+			parallelism = 1;
+		return transpose(dim1, dim2, rowOffsets, columnIndices, positions, parallelism);
+	}
+
+	/**
+	 * Transpose compressed sparse rows with the given number of threads
+	 *
+	 * @param dim1 the number of rows
+	 * @param dim2 the number of columns
+	 * @param rowOffsets the start of each row in columnIndices, with one extra sentinel
+	 * @param columnIndices the column indices of the entries
+	 * @param positions if not null, filled with the position in columnIndices
+	 *        of each entry of the result
+	 * @param parallelism the number of threads
+	 * @return the column offsets and the row indices
+	 */
+	public static int[][] transpose(final int dim1, final int dim2, final int[] rowOffsets,
+			final int[] columnIndices, final int[] positions, int parallelism) {
+		final int size = rowOffsets[dim1];
+
+		// one histogram of dim2 counters per block, keep them about as large as the entries
+		int tasks = (parallelism > 1) ? parallelism * 4 : 1;
+		long maxBlocks = 2L * size / (dim2 + 1) + 1;
+		final int blocks = (int) Math.max(Math.min(Math.min(tasks, maxBlocks), dim1), 1);
+		final int ranges = Math.max(Math.min(tasks, dim2), 1);
+
+		// the first row of each block, cut at about size * b / blocks entries
+		final int[] rowBounds = new int[blocks + 1];
+		rowBounds[blocks] = dim1;
+		for(int b = 1; b != blocks; ++b)
+			rowBounds[b] = Math.max(firstRowFrom(rowOffsets, dim1, (int) ((long) size * b / blocks)), rowBounds[b - 1]);
+
+		final int[][] counts = new int[blocks][];
+		final int[] totals = new int[dim2];
+		final long[] rangeTotals = new long[ranges];
+		final int[] columnOffsets = new int[dim2 + 1];
+		final int[] rowIndices = new int[size];
+
+		ExecutorService pool = (parallelism > 1) ? Executors.newFixedThreadPool(parallelism) : null;
+		try {
+			// 1, the column degrees of each block
+			forEachBlock(pool, blocks, new Body() {
+				public void run(int b) {
+					int[] count = new int[dim2];
+					for(int pos = rowOffsets[rowBounds[b]]; pos != rowOffsets[rowBounds[b + 1]]; ++pos)
+						count[columnIndices[pos]]++;
+					counts[b] = count;
+				}
+			});
+
+			// 2, the exclusive prefix over the blocks of each column, then over the columns
+			forEachBlock(pool, ranges, new Body() {
+				public void run(int k) {
+					long sum = 0;
+					int end = (int) ((long) dim2 * (k + 1) / ranges);
+					for(int c = (int) ((long) dim2 * k / ranges); c != end; ++c){
+						int total = 0;
+						for(int b = 0; b != blocks; ++b){
+							int count = counts[b][c];
+							counts[b][c] = total;
+							total += count;
+						}
+						totals[c] = total;
+						sum += total;
+					}
+					rangeTotals[k] = sum;
+				}
+			});
+			long base = 0;
+			for(int k = 0; k != ranges; ++k){
+				long total = rangeTotals[k];
+				rangeTotals[k] = base;
+				base += total;
+			}
+			forEachBlock(pool, ranges, new Body() {
+				public void run(int k) {
+					int offset = (int) rangeTotals[k];
+					int end = (int) ((long) dim2 * (k + 1) / ranges);
+					for(int c = (int) ((long) dim2 * k / ranges); c != end; ++c){
+						columnOffsets[c] = offset;
+						for(int b = 0; b != blocks; ++b)
+							counts[b][c] += offset;
+						offset += totals[c];
+					}
+				}
+			});
+			columnOffsets[dim2] = size;
+
+			// 3, scatter the entries of each block
+			forEachBlock(pool, blocks, new Body() {
+				public void run(int b) {
+					int[] next = counts[b];
+					for(int r = rowBounds[b]; r != rowBounds[b + 1]; ++r){
+						for(int pos = rowOffsets[r]; pos != rowOffsets[r + 1]; ++pos){
+							int target = next[columnIndices[pos]]++;
+							rowIndices[target] = r;
+							if(positions != null)
+								positions[target] = pos;
+						}
+					}
+				}
+			});
+		} finally {
+			if(pool != null)
+				pool.shutdownNow();
+		}
+		return new int[][] { columnOffsets, rowIndices };
+	}
+
+	/**
+	 * Get the first row whose entries start at or after the given position
+	 *
+	 * @param rowOffsets the start of each row, with one extra sentinel
+	 * @param dim1 the number of rows
+	 * @param pos the position
+	 * @return the row number, dim1 if there is none
+	 */
+	static int firstRowFrom(int[] rowOffsets, int dim1, int pos) {
+		int low = 0, high = dim1;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(rowOffsets[middle] < pos)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,239 @@
+package org.cis.util;
+
+/**
+ * This class implementing an open addressing hash map from long keys to int values
+ * with linear probing, the keys and values are stored in primitive arrays so that
+ * no object is allocated per entry
+ *
+ * @author Zhang Si (zhangsi.cs@gmail.com)
+ *
+ */
+public class LongIntHashMap {
+
+	/** the key marking a free slot */
+	private static final long FREE_KEY = 0L;
+	/** the max capacity of the table */
+	private static final int MAX_CAPACITY = 1 << 30;
+	/** the max ratio of entries to slots */
+	private static final double LOAD_FACTOR = 0.75;
+
+	/** the keys of the table */
+	private long[] keys;
+	/** the values of the table */
+	private int[] values;
+	/** capacity - 1, used to wrap the probing */
+	private int mask;
+	/** the number of entries before the table is enlarged */
+	private int threshold;
+	/** the number of entries */
+	private int size;
+
+	/** whether the free key itself is stored */
+	private boolean hasFreeKey;
+	/** the value of the free key */
+	private int freeValue;
+
+	/** the value returned for absent keys */
+	private final int missingValue;
+
+	/**
+	 * Construct an empty hash map
+	 *
+	 * @param expectedSize the expected number of entries
+	 * @param missingValue the value returned for absent keys
+	 */
+	public LongIntHashMap(int expectedSize, int missingValue) {
+		this.missingValue = missingValue;
+		allocate(tableSize(expectedSize));
+	}
+
+	/**
+	 * Get the table size which holds the given number of entries
+	 * under the load factor
+	 *
+	 * @param expectedSize the expected number of entries
+	 * @return the power of two table size
+	 */
+	private static int tableSize(long expectedSize) {
+		long required = (long) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR);
+		if(required > MAX_CAPACITY)
+			return MAX_CAPACITY;
+		return Integer.highestOneBit((int) required - 1) << 1;
+	}
+
+	/**
+	 * Allocate the arrays of the table
+	 *
+	 * @param capacity the power of two capacity
+	 */
+	private void allocate(int capacity) {
+		keys   = new long[capacity];
+		values = new int[capacity];
+		mask   = capacity - 1;
+		threshold = (int) Math.min(capacity * LOAD_FACTOR, capacity - 1);
+	}
+
+	/**
+	 * Mix the bits of a key, the finalizer of murmur3
+	 *
+	 * @param key the key
+	 * @return the hash code of the key
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * Get the value of the given key
+	 *
+	 * @param key the key
+	 * @return the value of the key, or the missing value if the key is absent
+	 */
+	public int get(long key) {
+		if(key == FREE_KEY)
+			return hasFreeKey ? freeValue : missingValue;
+
+		int slot = hash(key) & mask;
+		long k;
+		while((k = keys[slot]) != FREE_KEY){
+			if(k == key)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return missingValue;
+	}
+
+	/**
+	 * Whether the map contains the given key
+	 *
+	 * @param key the key
+	 * @return true if the key is stored
+	 */
+	public boolean containsKey(long key) {
+		if(key == FREE_KEY)
+			return hasFreeKey;
+
+		int slot = hash(key) & mask;
+		long k;
+		while((k = keys[slot]) != FREE_KEY){
+			if(k == key)
+				return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Associate the value with the key
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @return the previous value of the key, or the missing value if the key was absent
+	 */
+	public int put(long key, int value) {
+		return insert(key, value, true);
+	}
+
+	/**
+	 * Associate the value with the key only if the key is absent
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @return the current value of the key, or the missing value if the key was absent
+	 */
+	public int putIfAbsent(long key, int value) {
+		return insert(key, value, false);
+	}
+
+	/**
+	 * Insert an entry into the table
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @param replace whether to replace the value of an existing key
+	 * @return the previous value of the key, or the missing value if the key was absent
+	 */
+	private int insert(long key, int value, boolean replace) {
+		if(key == FREE_KEY){
+			if(hasFreeKey){
+				int previous = freeValue;
+				if(replace)
+					freeValue = value;
+				return previous;
+			}
+			hasFreeKey = true;
+			freeValue  = value;
+			size++;
+			return missingValue;
+		}
+
+		int slot = hash(key) & mask;
+		long k;
+		while((k = keys[slot]) != FREE_KEY){
+			if(k == key){
+				int previous = values[slot];
+				if(replace)
+					values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot]   = key;
+		values[slot] = value;
+		if(++size >= threshold)
+			rehash();
+		return missingValue;
+	}
+
+	/**
+	 * Double the table and reinsert all the entries
+	 */
+	private void rehash() {
+		if(keys.length == MAX_CAPACITY){
+			if(size >= mask)
+				throw new IllegalStateException("hash map is full: " + size + " entries");
+			// keep the table, probing stays correct until one slot is left
+			threshold = mask;
+			return;
+		}
+
+		long[] oldKeys   = keys;
+		int[]  oldValues = values;
+		allocate(oldKeys.length << 1);
+
+		for(int i = 0; i != oldKeys.length; ++i){
+			long key = oldKeys[i];
+			if(key == FREE_KEY)
+				continue;
+			int slot = hash(key) & mask;
+			while(keys[slot] != FREE_KEY)
+				slot = (slot + 1) & mask;
+			keys[slot]   = key;
+			values[slot] = oldValues[i];
+		}
+	}
+
+	/**
+	 * Get the number of entries
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the value returned for absent keys
+	 *
+	 * @return the missing value
+	 */
+	public int getMissingValue() {
+		return missingValue;
+	}
+}